@@ -0,0 +1,473 @@
+package nu.mine.mosher.gnopt.processor;
+
+
+
+import com.sun.source.tree.*;
+import com.sun.source.util.Trees;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+
+
+/**
+ * An annotation processor that compiles option processor classes at build time.
+ * For each class marked with {@code nu.mine.mosher.gnopt.GnoptDispatch}, it performs
+ * the same checks that {@code GnoptCompiler} performs at run time, and
+ * reports any failures as compilation errors. If there are no errors, it generates
+ * a {@code GnoptDispatcher} for the class, which dispatches options with a {@code switch}
+ * statement on the option name, without any reflection.
+ *
+ * To use it, add this module to the annotation processor path, for example (in gradle):
+ * {@code annotationProcessor 'nu.mine.mosher.gnopt:gnopt-processor:<version>'}
+ */
+@SupportedAnnotationTypes(GnoptAnnotationProcessor.ANNOTATION)
+public class GnoptAnnotationProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "nu.mine.mosher.gnopt.GnoptDispatch";
+    static final String DISPATCHER = "nu.mine.mosher.gnopt.GnoptDispatcher";
+    static final String OPTION_ANNOTATION = "nu.mine.mosher.gnopt.GnoptOption";
+    static final String CONCURRENT_ANNOTATION = "nu.mine.mosher.gnopt.GnoptConcurrent";
+    static final String DISPATCHER_SUFFIX = "GnoptDispatcher";
+    static final String SUGGESTER = "nu.mine.mosher.gnopt.compiler.GnoptSuggester";
+    static final String INVALID_VALUE = "nu.mine.mosher.gnopt.compiler.GnoptCompiler.InvalidValueException";
+    static final String METHOD_NAME_FOR_UNNAMED_ARGS = "__";
+    static final String STATIC_MAPPING_FIELD_NAME = "GNOPT";
+    static final Set<String> TYPED = Set.of(
+        "java.nio.file.Path",
+        "java.time.Duration",
+        "java.util.OptionalInt",
+        "java.util.OptionalLong");
+
+    private boolean typedParameters;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment round) {
+        for (final TypeElement annotation : annotations) {
+            for (final Element element : round.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    processClass((TypeElement)element);
+                } else {
+                    error(element, "only a class can be an option processor");
+                }
+            }
+        }
+        return true;
+    }
+
+
+
+    private void processClass(final TypeElement classProcessor) {
+        boolean ok = checkClass(classProcessor);
+        this.typedParameters = false;
+
+        final Map<String, ExecutableElement> methods = new HashMap<>();
+        final Set<String> overloaded = new HashSet<>();
+        final Set<String> names = new HashSet<>();
+        final Map<String, String> mapNameToMethod = new LinkedHashMap<>();
+        for (final ExecutableElement method : ElementFilter.methodsIn(this.processingEnv.getElementUtils().getAllMembers(classProcessor))) {
+            if (isCandidate(method)) {
+                if (method.getParameters().size() <= 1 && Objects.nonNull(methods.put(method.getSimpleName().toString(), method))) {
+                    overloaded.add(method.getSimpleName().toString());
+                }
+                if (!isHidden(method)) {
+                    if (!names.add(method.getSimpleName().toString())) {
+                        error(classProcessor, method, "option name must be unique");
+                        ok = false;
+                    } else if (checkMethod(classProcessor, method)) {
+                        mapNameToMethod.put(method.getSimpleName().toString(), method.getSimpleName().toString());
+                    } else {
+                        ok = false;
+                    }
+                }
+            }
+        }
+
+        for (final VariableElement field : ElementFilter.fieldsIn(this.processingEnv.getElementUtils().getAllMembers(classProcessor))) {
+            if (isOptionField(field)) {
+                this.typedParameters = true;
+                if (!checkField(classProcessor, field)) {
+                    ok = false;
+                }
+            }
+        }
+
+        final Optional<Map<String, String>> mapping = getMapping(classProcessor);
+        if (mapping.isEmpty()) {
+            return;
+        }
+        for (final Map.Entry<String, String> entry : mapping.get().entrySet()) {
+            final ExecutableElement method = methods.get(entry.getValue());
+            if (overloaded.contains(entry.getValue())) {
+                error(classProcessor, "mapped method is overloaded: "+entry.getKey()+" -> "+entry.getValue());
+                ok = false;
+            } else if (Objects.isNull(method)) {
+                error(classProcessor, "mapped method does not exist: "+entry.getKey()+" -> "+entry.getValue());
+                ok = false;
+            } else if (!names.add(fold(entry.getKey()))) {
+                error(classProcessor, "mapped option name is not unique: "+entry.getKey()+" -> "+entry.getValue());
+                ok = false;
+            } else if (checkMethod(classProcessor, method)) {
+                mapNameToMethod.put(entry.getKey(), entry.getValue());
+            } else {
+                ok = false;
+            }
+        }
+
+        if (ok && this.typedParameters) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "options with typed (converted) values, or stored into fields, are not supported by generated dispatchers; no dispatcher will be generated", classProcessor);
+        } else if (ok) {
+            generate(classProcessor, mapNameToMethod, methods);
+        }
+    }
+
+    private boolean checkClass(final TypeElement classProcessor) {
+        boolean ok = true;
+        if (classProcessor.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(classProcessor, "option processor class cannot be abstract");
+            ok = false;
+        }
+        if (classProcessor.getNestingKind().isNested() && !classProcessor.getModifiers().contains(Modifier.STATIC)) {
+            error(classProcessor, "nested option processor class must be static");
+            ok = false;
+        }
+        final boolean hasConstructor = ElementFilter.constructorsIn(classProcessor.getEnclosedElements()).stream().anyMatch(c ->
+            c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE));
+        if (!hasConstructor) {
+            error(classProcessor, "option processor class must have a non-private constructor with no arguments");
+            ok = false;
+        }
+        return ok;
+    }
+
+    private boolean checkMethod(final TypeElement classProcessor, final ExecutableElement method) {
+        boolean ok = true;
+        if (method.getReturnType().getKind() != TypeKind.VOID) {
+            error(classProcessor, method, "return type must be void");
+            ok = false;
+        }
+        if (method.getParameters().isEmpty()) {
+            if (method.getSimpleName().contentEquals(METHOD_NAME_FOR_UNNAMED_ARGS)) {
+                error(classProcessor, method, "method for non-option arguments must have an argument");
+                ok = false;
+            }
+        } else if (hasTypedParameter(method)) {
+            this.typedParameters = true;
+        } else if (!hasOptionalStringParameter(method)) {
+            error(classProcessor, method, "must have no argument, or one argument of a supported type");
+            ok = false;
+        }
+        if (method.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(classProcessor, method, "cannot be abstract");
+            ok = false;
+        }
+        return ok;
+    }
+
+    private boolean checkField(final TypeElement classProcessor, final VariableElement field) {
+        final Set<Modifier> mods = field.getModifiers();
+        boolean ok = true;
+        if (!mods.contains(Modifier.PUBLIC)) {
+            error(classProcessor, field, "must be public");
+            ok = false;
+        }
+        if (mods.contains(Modifier.STATIC)) {
+            error(classProcessor, field, "cannot be static");
+            ok = false;
+        }
+        if (mods.contains(Modifier.FINAL)) {
+            error(classProcessor, field, "cannot be final");
+            ok = false;
+        }
+        return ok;
+    }
+
+    private static boolean isOptionField(final VariableElement field) {
+        return hasAnnotation(field, OPTION_ANNOTATION);
+    }
+
+    private static boolean hasAnnotation(final Element element, final String annotation) {
+        return element.getAnnotationMirrors().stream().anyMatch(a ->
+            ((TypeElement)a.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation));
+    }
+
+    private boolean isCandidate(final ExecutableElement method) {
+        final Set<Modifier> mods = method.getModifiers();
+        return
+            mods.contains(Modifier.PUBLIC) &&
+            !mods.contains(Modifier.STATIC) &&
+            !((TypeElement)method.getEnclosingElement()).getQualifiedName().contentEquals(Object.class.getName());
+    }
+
+    private static boolean isHidden(final ExecutableElement method) {
+        final String name = method.getSimpleName().toString();
+        return
+            name.startsWith(METHOD_NAME_FOR_UNNAMED_ARGS) &&
+            !name.equals(METHOD_NAME_FOR_UNNAMED_ARGS);
+    }
+
+    private boolean hasOptionalStringParameter(final ExecutableElement method) {
+        if (method.getParameters().size() != 1) {
+            return false;
+        }
+        final var elements = this.processingEnv.getElementUtils();
+        final var types = this.processingEnv.getTypeUtils();
+        final DeclaredType optionalString = types.getDeclaredType(
+            elements.getTypeElement(Optional.class.getName()),
+            elements.getTypeElement(String.class.getName()).asType());
+        return types.isSameType(method.getParameters().get(0).asType(), optionalString);
+    }
+
+    /*
+     * Parameter types that GnoptCompiler converts from the option's value at run time.
+     */
+    private boolean hasTypedParameter(final ExecutableElement method) {
+        if (method.getParameters().size() != 1) {
+            return false;
+        }
+        final TypeMirror type = method.getParameters().get(0).asType();
+        switch (type.getKind()) {
+            case INT:
+            case LONG:
+            case DOUBLE:
+            case BOOLEAN:
+                return true;
+            case DECLARED:
+                final TypeElement element = (TypeElement)((DeclaredType)type).asElement();
+                return
+                    element.getKind() == ElementKind.ENUM ||
+                    TYPED.contains(element.getQualifiedName().toString());
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * The mapping can only be analyzed at build time if it is initialized
+     * with a call to Map.of(...) with string literal arguments. Otherwise,
+     * no dispatcher is generated, and Gnopt will fall back to compiling the class at run time.
+     */
+    private Optional<Map<String, String>> getMapping(final TypeElement classProcessor) {
+        final Optional<VariableElement> field = ElementFilter.fieldsIn(this.processingEnv.getElementUtils().getAllMembers(classProcessor)).stream()
+            .filter(f -> f.getSimpleName().contentEquals(STATIC_MAPPING_FIELD_NAME))
+            .filter(f -> f.getModifiers().containsAll(Set.of(Modifier.PUBLIC, Modifier.STATIC)))
+            .findAny();
+        if (field.isEmpty()) {
+            return Optional.of(Map.of());
+        }
+
+        final Optional<Map<String, String>> mapping = parseMapping(field.get());
+        if (mapping.isEmpty()) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "cannot analyze "+STATIC_MAPPING_FIELD_NAME+" mapping (it must be initialized by Map.of with string literals); no dispatcher will be generated", field.get());
+        }
+        return mapping;
+    }
+
+    private Optional<Map<String, String>> parseMapping(final VariableElement field) {
+        final Tree tree;
+        try {
+            tree = Trees.instance(this.processingEnv).getTree(field);
+        } catch (final IllegalArgumentException notJavac) {
+            return Optional.empty();
+        }
+        if (!(tree instanceof VariableTree)) {
+            return Optional.empty();
+        }
+        final ExpressionTree init = ((VariableTree)tree).getInitializer();
+        if (!(init instanceof MethodInvocationTree)) {
+            return Optional.empty();
+        }
+        final MethodInvocationTree call = (MethodInvocationTree)init;
+        if (!call.getMethodSelect().toString().matches("(java\\.util\\.)?Map\\.of")) {
+            return Optional.empty();
+        }
+        final List<String> literals = new ArrayList<>();
+        for (final ExpressionTree arg : call.getArguments()) {
+            if (!(arg instanceof LiteralTree) || !(((LiteralTree)arg).getValue() instanceof String)) {
+                return Optional.empty();
+            }
+            literals.add((String)((LiteralTree)arg).getValue());
+        }
+        final Map<String, String> mapping = new LinkedHashMap<>();
+        for (int i = 0; i+1 < literals.size(); i += 2) {
+            mapping.put(literals.get(i), literals.get(i+1));
+        }
+        return Optional.of(mapping);
+    }
+
+
+
+    private void generate(final TypeElement classProcessor, final Map<String, String> mapNameToMethod, final Map<String, ExecutableElement> methods) {
+        final String pkg = this.processingEnv.getElementUtils().getPackageOf(classProcessor).getQualifiedName().toString();
+        final String simple = dispatcherSimpleName(classProcessor);
+        final String type = classProcessor.getQualifiedName().toString();
+
+        try (final PrintWriter out = new PrintWriter(this.processingEnv.getFiler().createSourceFile(qualify(pkg, simple), classProcessor).openWriter())) {
+            if (!pkg.isEmpty()) {
+                out.println("package "+pkg+";");
+                out.println();
+            }
+            out.println("@javax.annotation.processing.Generated(\""+getClass().getName()+"\")");
+            out.println("public final class "+simple+" implements "+DISPATCHER+"<"+type+"> {");
+            out.println("    @Override");
+            out.println("    public "+type+" instantiate() {");
+            out.println("        return new "+type+"();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public boolean dispatch(final "+type+" instance, final String name, final java.util.Optional<String> value) throws Throwable {");
+            out.println("        switch (name) {");
+            for (final Map.Entry<String, String> entry : mapNameToMethod.entrySet()) {
+                out.println("            case \""+escape(fold(entry.getKey()))+"\":");
+                if (methods.get(entry.getValue()).getParameters().isEmpty()) {
+                    out.println("                if (value.isPresent()) {");
+                    out.println("                    throw new "+INVALID_VALUE+"(\"unexpected value\");");
+                    out.println("                }");
+                    out.println("                instance."+entry.getValue()+"();");
+                } else {
+                    out.println("                instance."+entry.getValue()+"(value);");
+                }
+                out.println("                return true;");
+            }
+            out.println("            default:");
+            out.println("                return false;");
+            out.println("        }");
+            out.println("    }");
+
+            final SortedSet<String> names = new TreeSet<>();
+            mapNameToMethod.keySet().forEach(name -> names.add(fold(name)));
+            names.remove(METHOD_NAME_FOR_UNNAMED_ARGS);
+            out.println();
+            out.println("    private static final String[] NAMES = {");
+            for (final String name : names) {
+                out.println("        \""+escape(name)+"\",");
+            }
+            out.println("    };");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.List<String> complete(final String s, final int from, final int to) {");
+            out.println("        return "+DISPATCHER+".complete(NAMES, s, from, to);");
+            out.println("    }");
+            out.println();
+            out.println("    /** The index is built only when first needed (when an option is invalid). */");
+            out.println("    private static final class Suggestions {");
+            out.println("        private static final "+SUGGESTER+" INDEX = "+SUGGESTER+".of(java.util.List.of(NAMES));");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.List<String> suggest(final String name) {");
+            out.println("        return Suggestions.INDEX.suggest(name);");
+            out.println("    }");
+
+            final List<String> concurrent = new ArrayList<>();
+            mapNameToMethod.forEach((name, method) -> {
+                if (hasAnnotation(methods.get(method), CONCURRENT_ANNOTATION)) {
+                    concurrent.add(name);
+                }
+            });
+            if (!concurrent.isEmpty()) {
+                out.println();
+                out.println("    @Override");
+                out.println("    public boolean hasConcurrent() {");
+                out.println("        return true;");
+                out.println("    }");
+                out.println();
+                out.println("    @Override");
+                out.println("    public boolean isConcurrent(final String name) {");
+                out.println("        switch (name) {");
+                for (final String name : concurrent) {
+                    out.println("            case \""+escape(fold(name))+"\":");
+                }
+                out.println("                return true;");
+                out.println("            default:");
+                out.println("                return false;");
+                out.println("        }");
+                out.println("    }");
+            }
+            out.println("}");
+        } catch (final IOException e) {
+            error(classProcessor, "cannot generate dispatcher: "+e);
+        }
+    }
+
+    static String dispatcherSimpleName(final TypeElement classProcessor) {
+        final Deque<String> names = new ArrayDeque<>();
+        Element e = classProcessor;
+        while (e instanceof TypeElement) {
+            names.addFirst(e.getSimpleName().toString());
+            e = e.getEnclosingElement();
+        }
+        return String.join("_", names) + DISPATCHER_SUFFIX;
+    }
+
+    private static String qualify(final String pkg, final String simple) {
+        return pkg.isEmpty() ? simple : pkg + "." + simple;
+    }
+
+    /*
+     * Option names are looked up with hyphen-minus characters treated as underscores
+     * (as nu.mine.mosher.gnopt.compiler.OptionTrie does), so the generated code must use them folded.
+     */
+    private static String fold(final String name) {
+        return name.replace('-', '_');
+    }
+
+    /*
+     * Control characters cannot be written as Unicode escapes, because javac translates
+     * those before it reads the string literal (so an escaped line feed would end it).
+     */
+    private static String escape(final String s) {
+        final StringBuilder sb = new StringBuilder(s.length());
+        for (final char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c == '\b') {
+                sb.append("\\b");
+            } else if (c == '\t') {
+                sb.append("\\t");
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else if (c == '\f') {
+                sb.append("\\f");
+            } else if (c == '\r') {
+                sb.append("\\r");
+            } else if (c < ' ') {
+                sb.append(String.format("\\%03o", (int)c));
+            } else if (c > '~') {
+                sb.append(String.format("\\u%04x", (int)c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+
+
+    private void error(final TypeElement classProcessor, final Element member, final String requirement) {
+        final String kind = member.getKind() == ElementKind.FIELD ? "field" : "method";
+        final String message = "Failure, requirement=\""+requirement+"\", "+kind+"=\""+member.getSimpleName()+"\"";
+        if (member.getEnclosingElement().equals(classProcessor)) {
+            error(member, message);
+        } else {
+            error(classProcessor, message);
+        }
+    }
+
+    private void error(final Element element, final String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
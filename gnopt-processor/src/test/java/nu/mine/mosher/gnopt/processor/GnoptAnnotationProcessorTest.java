@@ -0,0 +1,244 @@
+package nu.mine.mosher.gnopt.processor;
+
+import nu.mine.mosher.gnopt.Gnopt;
+import nu.mine.mosher.gnopt.GnoptDispatcher;
+import nu.mine.mosher.gnopt.GnoptParser;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.*;
+import java.io.*;
+import java.lang.reflect.Field;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptAnnotationProcessorTest {
+    private static final String NOMINAL =
+        "package demo;\n" +
+        "import java.util.*;\n" +
+        "@nu.mine.mosher.gnopt.GnoptDispatch\n" +
+        "public class Opts {\n" +
+        "    public static Map<String, String> GNOPT = Map.of(\"void\", \"__v\");\n" +
+        "    public String log = \"\";\n" +
+        "    public void verbose(Optional<String> v) { log += \"verbose;\"; }\n" +
+        "    public void dry_run(Optional<String> v) { log += \"dry_run;\"; }\n" +
+        "    public void quiet() { log += \"quiet;\"; }\n" +
+        "    public volatile String loaded;\n" +
+        "    @nu.mine.mosher.gnopt.GnoptConcurrent public void load(Optional<String> v) { loaded = v.get(); }\n" +
+        "    public void __(Optional<String> v) { log += \"arg=\" + v.get() + \";\"; }\n" +
+        "    public void __v(Optional<String> v) { log += \"void=\" + v.get() + \";\"; }\n" +
+        "    public static void ignored(int x) { }\n" +
+        "}\n";
+
+    private static final String MAPPED_NAMES =
+        "package demo;\n" +
+        "import java.util.*;\n" +
+        "@nu.mine.mosher.gnopt.GnoptDispatch\n" +
+        "public class Mapped {\n" +
+        "    public static Map<String, String> GNOPT = Map.of(\"no-cache\", \"__n\", \"line\\nbreak\\r\\t\\u0001\", \"__l\");\n" +
+        "    public String log = \"\";\n" +
+        "    public void __n() { log += \"no_cache;\"; }\n" +
+        "    public void __l() { log += \"line;\"; }\n" +
+        "}\n";
+
+    private static final String BAD =
+        "package demo;\n" +
+        "import java.util.*;\n" +
+        "@nu.mine.mosher.gnopt.GnoptDispatch\n" +
+        "public class Bad {\n" +
+        "    public String foo(Optional<String> v) { return \"\"; }\n" +
+        "    public void bar(String v) { }\n" +
+        "    public void __() { }\n" +
+        "}\n";
+
+    private static final String TYPED =
+        "package demo;\n" +
+        "import java.util.*;\n" +
+        "@nu.mine.mosher.gnopt.GnoptDispatch\n" +
+        "public class Typed {\n" +
+        "    public void port(int port) { }\n" +
+        "    public void timeout(java.time.Duration d) { }\n" +
+        "    @nu.mine.mosher.gnopt.GnoptOption public Optional<String> name;\n" +
+        "}\n";
+
+    private static final String BAD_FIELD =
+        "package demo;\n" +
+        "@nu.mine.mosher.gnopt.GnoptDispatch\n" +
+        "public class BadField {\n" +
+        "    @nu.mine.mosher.gnopt.GnoptOption private static final int port = 0;\n" +
+        "}\n";
+
+    private static final String BAD_MAPPING =
+        "package demo;\n" +
+        "import java.util.*;\n" +
+        "@nu.mine.mosher.gnopt.GnoptDispatch\n" +
+        "public class BadMapping {\n" +
+        "    public static Map<String, String> GNOPT = Map.of(\"void\", \"doesNotExist\");\n" +
+        "}\n";
+
+    private static final String OVERLOADED_OPTION =
+        "package demo;\n" +
+        "import java.util.*;\n" +
+        "@nu.mine.mosher.gnopt.GnoptDispatch\n" +
+        "public class OverloadedOption {\n" +
+        "    public void foo() {}\n" +
+        "    public void foo(Optional<String> value) {}\n" +
+        "}\n";
+
+    private static final String DUPLICATE_MAPPING =
+        "package demo;\n" +
+        "import java.util.*;\n" +
+        "@nu.mine.mosher.gnopt.GnoptDispatch\n" +
+        "public class DuplicateMapping {\n" +
+        "    public static Map<String, String> GNOPT = Map.of(\"flag\", \"__f\");\n" +
+        "    public void flag() {}\n" +
+        "    public void __f() {}\n" +
+        "}\n";
+
+    private static final String OVERLOADED_MAPPING =
+        "package demo;\n" +
+        "import java.util.*;\n" +
+        "@nu.mine.mosher.gnopt.GnoptDispatch\n" +
+        "public class OverloadedMapping {\n" +
+        "    public static Map<String, String> GNOPT = Map.of(\"void\", \"__v\");\n" +
+        "    public void __v() {}\n" +
+        "    public void __v(Optional<String> value) {}\n" +
+        "}\n";
+
+    @Test
+    void nominal() throws Throwable {
+        final Result result = compile("Opts", NOMINAL);
+        assertTrue(result.success, result.diagnostics.toString());
+        assertTrue(Files.exists(result.out.resolve("demo/OptsGnoptDispatcher.class")));
+
+        try (final URLClassLoader loader = new URLClassLoader(new URL[] { result.out.toUri().toURL() }, getClass().getClassLoader())) {
+            final Class<?> classProcessor = loader.loadClass("demo.Opts");
+            final Object opts = Gnopt.process(classProcessor, "--verbose", "in.txt", "--dry-run", "--quiet", "--void=x");
+            final Field log = classProcessor.getField("log");
+            assertEquals("verbose;arg=in.txt;dry_run;quiet;void=x;", log.get(opts));
+            assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(classProcessor, "--ignored"));
+            assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(classProcessor, "--quiet=x"));
+            assertEquals("x", classProcessor.getField("loaded").get(Gnopt.process(classProcessor, "--load=x")));
+
+            final GnoptDispatcher<?> dispatcher = (GnoptDispatcher<?>)loader.loadClass("demo.OptsGnoptDispatcher").getConstructor().newInstance();
+            assertTrue(dispatcher.hasConcurrent());
+            assertTrue(dispatcher.isConcurrent("load"));
+            assertFalse(dispatcher.isConcurrent("quiet"));
+            assertEquals(List.of("verbose"), dispatcher.complete("--verb", 2, 6));
+            assertEquals(List.of("void"), dispatcher.complete("void", 0, 4));
+            assertEquals(List.of("verbose", "void"), dispatcher.complete("v", 0, 1));
+            assertEquals(List.of(), dispatcher.complete("_", 0, 1));
+            assertEquals(List.of("quiet"), dispatcher.suggest("quite"));
+            final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(classProcessor, "--verbos"));
+            assertTrue(e.getMessage().contains("did you mean: verbose?"), e.getMessage());
+
+            final Object abbreviated = GnoptParser.of(classProcessor).withAbbreviations(true).parse("--dry", "--qu");
+            assertEquals("dry_run;quiet;", log.get(abbreviated));
+        }
+    }
+
+    @Test
+    void negRequirements() throws IOException {
+        final Result result = compile("Bad", BAD);
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString().contains("return type must be void"));
+        assertTrue(result.diagnostics.toString().contains("method for non-option arguments must have an argument"));
+        assertTrue(result.diagnostics.toString().contains("must have no argument, or one argument of a supported type"));
+        assertFalse(Files.exists(result.out.resolve("demo/BadGnoptDispatcher.class")));
+    }
+
+    @Test
+    void typedIsNotGenerated() throws IOException {
+        final Result result = compile("Typed", TYPED);
+        assertTrue(result.success, result.diagnostics.toString());
+        assertTrue(result.diagnostics.toString().contains("no dispatcher will be generated"));
+        assertFalse(Files.exists(result.out.resolve("demo/TypedGnoptDispatcher.class")));
+    }
+
+    @Test
+    void negField() throws IOException {
+        final Result result = compile("BadField", BAD_FIELD);
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString().contains("requirement=\"must be public\", field=\"port\""), result.diagnostics.toString());
+        assertTrue(result.diagnostics.toString().contains("cannot be static"));
+        assertTrue(result.diagnostics.toString().contains("cannot be final"));
+    }
+
+    @Test
+    void negMappedMethodDoesNotExist() throws IOException {
+        final Result result = compile("BadMapping", BAD_MAPPING);
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString().contains("mapped method does not exist"));
+    }
+
+    @Test
+    void mappedNamesAreFoldedAndEscaped() throws Throwable {
+        final Result result = compile("Mapped", MAPPED_NAMES);
+        assertTrue(result.success, result.diagnostics.toString());
+
+        try (final URLClassLoader loader = new URLClassLoader(new URL[] { result.out.toUri().toURL() }, getClass().getClassLoader())) {
+            final Class<?> classProcessor = loader.loadClass("demo.Mapped");
+            final Object opts = Gnopt.process(classProcessor, "--no-cache", "--no_cache", "--line\nbreak\r\t\u0001");
+            assertEquals("no_cache;no_cache;line;", classProcessor.getField("log").get(opts));
+
+            @SuppressWarnings("unchecked")
+            final GnoptDispatcher<Object> dispatcher = (GnoptDispatcher<Object>)loader.loadClass("demo.MappedGnoptDispatcher").getConstructor().newInstance();
+            final Object direct = classProcessor.getConstructor().newInstance();
+            assertTrue(dispatcher.dispatch(direct, "--no-cache", 2, 10, Optional.empty()));
+            assertEquals("no_cache;", classProcessor.getField("log").get(direct));
+        }
+    }
+
+    @Test
+    void negOverloadedOption() throws IOException {
+        final Result result = compile("OverloadedOption", OVERLOADED_OPTION);
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString().contains("requirement=\"option name must be unique\", method=\"foo\""), result.diagnostics.toString());
+    }
+
+    @Test
+    void negDuplicateMappedName() throws IOException {
+        final Result result = compile("DuplicateMapping", DUPLICATE_MAPPING);
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString().contains("mapped option name is not unique: flag -> __f"), result.diagnostics.toString());
+    }
+
+    @Test
+    void negMappedMethodIsOverloaded() throws IOException {
+        final Result result = compile("OverloadedMapping", OVERLOADED_MAPPING);
+        assertFalse(result.success);
+        assertTrue(result.diagnostics.toString().contains("mapped method is overloaded: void -> __v"), result.diagnostics.toString());
+    }
+
+
+
+    private static class Result {
+        boolean success;
+        Path out;
+        final List<String> diagnostics = new ArrayList<>();
+    }
+
+    private static Result compile(final String className, final String source) throws IOException {
+        final Path dir = Files.createTempDirectory("gnopt-processor-test");
+        final Path src = dir.resolve("src/demo/"+className+".java");
+        Files.createDirectories(src.getParent());
+        Files.writeString(src, source);
+
+        final Result result = new Result();
+        result.out = Files.createDirectories(dir.resolve("out"));
+
+        final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (final StandardJavaFileManager files = javac.getStandardFileManager(diagnostics, null, null)) {
+            final JavaCompiler.CompilationTask task = javac.getTask(null, files, diagnostics,
+                List.of("-classpath", System.getProperty("java.class.path"), "-d", result.out.toString()),
+                null, files.getJavaFileObjects(src.toFile()));
+            task.setProcessors(List.of(new GnoptAnnotationProcessor()));
+            result.success = task.call();
+        }
+        diagnostics.getDiagnostics().forEach(d -> result.diagnostics.add(d.getMessage(Locale.ROOT)));
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link GnoptCompiler#compile(Class)} (uncached) for
+ * option processor classes of various sizes.
+ *
+ * Run with: {@code ./gradlew jmh -PjmhIncludes=CompileBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompileBenchmark {
+    @Param({"5", "100", "5000"})
+    public int optionCount;
+
+    private Class<?> classProcessor;
+
+    @Setup
+    public void setup() throws Exception {
+        this.classProcessor = GeneratedProcessors.generate(this.optionCount);
+    }
+
+    @Benchmark
+    public GnoptCompiler compile() {
+        return GnoptCompiler.compile(this.classProcessor);
+    }
+}
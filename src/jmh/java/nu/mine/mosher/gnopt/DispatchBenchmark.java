@@ -0,0 +1,56 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares dispatching one option through {@link Method#invoke}
+ * (the original path) against the pre-adapted {@link MethodHandle}
+ * produced by {@link GnoptCompiler#handle(String)}.
+ *
+ * Run with: {@code ./gradlew jmh -PjmhIncludes=DispatchBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+public class DispatchBenchmark {
+    public static class Opts {
+        public int count;
+        public void verbose(final Optional<String> value) {
+            ++this.count;
+        }
+    }
+
+    private final Opts instance = new Opts();
+    private final Optional<String> value = Optional.of("value");
+    private Method method;
+    private MethodHandle handle;
+
+    @Setup
+    public void setup() {
+        final GnoptCompiler compiler = GnoptCompiler.compile(Opts.class);
+        this.method = compiler.processor("verbose").orElseThrow();
+        this.handle = compiler.handle("verbose").orElseThrow();
+    }
+
+    @Benchmark
+    public int reflective() throws Throwable {
+        this.method.invoke(this.instance, this.value);
+        return this.instance.count;
+    }
+
+    @Benchmark
+    public int methodHandle() throws Throwable {
+        this.handle.invokeExact((Object)this.instance, this.value);
+        return this.instance.count;
+    }
+}
@@ -0,0 +1,43 @@
+package nu.mine.mosher.gnopt;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.net.*;
+import java.nio.file.*;
+import java.util.List;
+
+/**
+ * Generates, compiles, and loads option processor classes with
+ * a given number of options, named {@code opt0}, {@code opt1}, etc.
+ */
+final class GeneratedProcessors {
+    private GeneratedProcessors() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    static Class<?> generate(final int optionCount) throws IOException, ClassNotFoundException {
+        final String name = "Opts" + optionCount;
+        final Path dir = Files.createTempDirectory("gnopt-jmh");
+        final Path src = dir.resolve(name + ".java");
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append("public class ").append(name).append(" {\n");
+        sb.append("    public int count;\n");
+        sb.append("    public void __(java.util.Optional<String> v) { ++count; }\n");
+        for (int i = 0; i < optionCount; ++i) {
+            sb.append("    public void opt").append(i).append("(java.util.Optional<String> v) { ++count; }\n");
+        }
+        sb.append("}\n");
+        Files.writeString(src, sb);
+
+        final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        try (final StandardJavaFileManager files = javac.getStandardFileManager(null, null, null)) {
+            if (!javac.getTask(null, files, null, List.of("-d", dir.toString()), null, files.getJavaFileObjects(src.toFile())).call()) {
+                throw new IllegalStateException("cannot compile " + src);
+            }
+        }
+
+        final URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, GeneratedProcessors.class.getClassLoader());
+        return loader.loadClass(name);
+    }
+}
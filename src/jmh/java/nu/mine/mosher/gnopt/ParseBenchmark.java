@@ -0,0 +1,104 @@
+package nu.mine.mosher.gnopt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Gnopt#process(Class, String...)} (with the compiled
+ * option processor cached) for argument vectors of various lengths and mixes.
+ * Allocation rates are reported by the GC profiler (configured in build.gradle).
+ *
+ * Run with: {@code ./gradlew jmh -PjmhIncludes=ParseBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+public class ParseBenchmark {
+    public static class Opts {
+        public int flags;
+        public int values;
+        public int args;
+
+        public void verbose(final Optional<String> value) {
+            ++this.flags;
+        }
+
+        public void dry_run(final Optional<String> value) {
+            ++this.flags;
+        }
+
+        public void name(final Optional<String> value) {
+            ++this.values;
+        }
+
+        public void __(final Optional<String> value) {
+            ++this.args;
+        }
+    }
+
+    public enum Mix {
+        /** only options: flags, hyphenated flags, and name=value */
+        OPTIONS,
+        /** only positional arguments */
+        POSITIONAL,
+        /** alternating options and positional arguments */
+        MIXED,
+        /** "--" first, so every following argument is positional */
+        TERMINATED
+    }
+
+    @Param({"1", "100", "10000", "1000000"})
+    public int argc;
+
+    @Param
+    public Mix mix;
+
+    private String[] args;
+
+    @Setup
+    public void setup() throws Gnopt.InvalidOption {
+        this.args = new String[this.argc];
+        for (int i = 0; i < this.argc; ++i) {
+            this.args[i] = arg(i);
+        }
+        if (this.mix == Mix.TERMINATED) {
+            this.args[0] = Gnopt.OPT_PREFIX;
+        }
+        Gnopt.process(Opts.class); // compile and cache before measuring
+    }
+
+    @Benchmark
+    public Opts process() throws Gnopt.InvalidOption {
+        return Gnopt.process(Opts.class, this.args);
+    }
+
+    private String arg(final int i) {
+        switch (this.mix) {
+            case OPTIONS:
+                return option(i);
+            case MIXED:
+                return i % 2 == 0 ? option(i) : "file" + i + ".txt";
+            case TERMINATED:
+                return "--file" + i + ".txt";
+            default:
+                return "file" + i + ".txt";
+        }
+    }
+
+    private static String option(final int i) {
+        switch (i % 3) {
+            case 0:
+                return "--verbose";
+            case 1:
+                return "--dry-run";
+            default:
+                return "--name=value" + i;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptSuggester;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a {@link GnoptSuggester}, and suggesting names
+ * for a misspelled option, for various numbers of options.
+ *
+ * Run with: {@code ./gradlew jmh -PjmhIncludes=SuggestBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SuggestBenchmark {
+    @Param({"5", "100", "5000"})
+    public int optionCount;
+
+    private List<String> names;
+    private GnoptSuggester suggester;
+
+    @Setup
+    public void setup() {
+        this.names = new ArrayList<>(this.optionCount);
+        for (int i = 0; i < this.optionCount; ++i) {
+            this.names.add("opt" + i);
+        }
+        this.suggester = GnoptSuggester.of(this.names);
+    }
+
+    @Benchmark
+    public GnoptSuggester build() {
+        return GnoptSuggester.of(this.names);
+    }
+
+    @Benchmark
+    public List<String> suggest() {
+        return this.suggester.suggest("otp1");
+    }
+}
@@ -0,0 +1,86 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+
+import java.lang.invoke.MethodHandle;
+import java.util.*;
+
+/**
+ * A {@link GnoptDispatcher} for an option processor class that has been
+ * compiled by reflection, using {@link GnoptCompiler}.
+ */
+final class CompiledDispatcher<OptProc> implements GnoptDispatcher<OptProc> {
+    private final Class<OptProc> classProcessor;
+    private final GnoptCompiler compilerProcessor;
+
+    CompiledDispatcher(final Class<OptProc> classProcessor, final GnoptCompiler compilerProcessor) {
+        this.classProcessor = Objects.requireNonNull(classProcessor);
+        this.compilerProcessor = Objects.requireNonNull(compilerProcessor);
+    }
+
+    /*
+     * Uses getConstructor (rather than the deprecated Class.newInstance) so the
+     * access is covered by the native-image metadata from GnoptReachability.
+     */
+    @Override
+    public OptProc instantiate() throws ReflectiveOperationException {
+        return this.classProcessor.getConstructor().newInstance();
+    }
+
+    @Override
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    public boolean dispatch(final OptProc instance, final String name, final Optional<String> value) throws Throwable {
+        final Optional<MethodHandle> handle = this.compilerProcessor.handle(name);
+        if (handle.isEmpty()) {
+            return false;
+        }
+        handle.get().invokeExact((Object)instance, value);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    public boolean dispatch(final OptProc instance, final String s, final int from, final int to, final Optional<String> value) throws Throwable {
+        final MethodHandle handle = this.compilerProcessor.handle(s, from, to);
+        if (Objects.isNull(handle)) {
+            return false;
+        }
+        handle.invokeExact((Object)instance, value);
+        return true;
+    }
+
+    @Override
+    public boolean dispatch(final OptProc instance, final String s, final int from, final int to, final String value, final int valueFrom) throws Throwable {
+        final MethodHandle handle = this.compilerProcessor.valueHandle(s, from, to);
+        if (Objects.isNull(handle)) {
+            return false;
+        }
+        handle.invokeExact((Object)instance, value, valueFrom); // <----- !!!!!!! The main purpose of Gnopt is this line.
+        return true;
+    }
+
+    @Override
+    public boolean hasConcurrent() {
+        return this.compilerProcessor.hasConcurrent();
+    }
+
+    @Override
+    public boolean isConcurrent(final String name) {
+        return isConcurrent(name, 0, name.length());
+    }
+
+    @Override
+    public boolean isConcurrent(final String s, final int from, final int to) {
+        return this.compilerProcessor.isConcurrent(s, from, to);
+    }
+
+    @Override
+    public List<String> complete(final String s, final int from, final int to) {
+        return this.compilerProcessor.complete(s, from, to);
+    }
+
+    @Override
+    public List<String> suggest(final String name) {
+        return this.compilerProcessor.suggest(name);
+    }
+}
@@ -1,10 +1,16 @@
 package nu.mine.mosher.gnopt;
 
 import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import nu.mine.mosher.gnopt.compiler.GnoptCompilerCache;
 import org.slf4j.*;
 
-import java.lang.reflect.*;
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
 
 public class Gnopt<OptProc> {
     /**
@@ -13,6 +19,13 @@ public class Gnopt<OptProc> {
      */
     public static final String OPT_PREFIX = "\u002D\u002D";
 
+    /**
+     * Prefix character that indicates an argument names a response file,
+     * whose contents are expanded in place, if response files are enabled
+     * (see {@link GnoptParser#withResponseFiles(boolean)}).
+     */
+    public static final char RESPONSE_FILE_PREFIX = '\u0040';
+
     public static class InvalidOption extends Exception {
         private InvalidOption(final String message) {
             super(message);
@@ -24,6 +37,11 @@ public class Gnopt<OptProc> {
 
     /**
      * The main entry-point for the option processor.
+     * If a {@link GnoptDispatcher} was generated at build time for classProcessor
+     * (see {@link GnoptDispatch}), it is used, and no reflective compilation is done.
+     * Otherwise, the compiled form of classProcessor is cached (see {@link GnoptCompilerCache}),
+     * so repeated calls for the same class do not recompile it.
+     * To parse many argument vectors for the same class, see {@link GnoptParser}.
      *
      * @param classProcessor {@link Class} of option processor to create, cannot be {@code null}
      * @param args array of command-line arguments to analyze for options,
@@ -34,22 +52,98 @@ public class Gnopt<OptProc> {
      * @throws InvalidOption if the option processing cannot be performed completely, for any reason
      */
     public static <OptProc> OptProc process(final Class<OptProc> classProcessor, final String... args) throws InvalidOption {
-        final GnoptCompiler compilerProcessor = GnoptCompiler.compile(Objects.requireNonNull(classProcessor));
+        return GnoptParser.of(classProcessor).parse(args);
+    }
 
-        final OptProc instanceProcessor = instantiate(classProcessor);
+    /**
+     * Processes arguments one at a time, as the given iterator produces them,
+     * without first collecting them into an array.
+     *
+     * @param classProcessor {@link Class} of option processor to create, cannot be {@code null}
+     * @param args iterator of command-line arguments, cannot be {@code null};
+     *             {@code null} elements are treated as empty strings
+     * @param <OptProc> class of classProcessor
+     * @return new instance of classProcessor, after processing args
+     * @throws InvalidOption if the option processing cannot be performed completely, for any reason
+     */
+    public static <OptProc> OptProc process(final Class<OptProc> classProcessor, final Iterator<String> args) throws InvalidOption {
+        return GnoptParser.of(classProcessor).parse(args);
+    }
 
-        if (Objects.nonNull(args)) {
-            new Gnopt<>(compilerProcessor, instanceProcessor).process(args);
-        }
+    /**
+     * Processes arguments one at a time, as the given stream produces them,
+     * without first collecting them into an array.
+     *
+     * @param classProcessor {@link Class} of option processor to create, cannot be {@code null}
+     * @param args (sequential) stream of command-line arguments, cannot be {@code null};
+     *             {@code null} elements are treated as empty strings
+     * @param <OptProc> class of classProcessor
+     * @return new instance of classProcessor, after processing args
+     * @throws InvalidOption if the option processing cannot be performed completely, for any reason
+     */
+    public static <OptProc> OptProc process(final Class<OptProc> classProcessor, final Stream<String> args) throws InvalidOption {
+        return GnoptParser.of(classProcessor).parse(args);
+    }
+
+    /**
+     * Processes NUL-delimited, UTF-8 encoded arguments (as produced by {@code find -print0}, for example)
+     * one at a time, as they are read from the given channel. Memory use does not depend on
+     * the number of arguments.
+     *
+     * @param classProcessor {@link Class} of option processor to create, cannot be {@code null}
+     * @param args channel of NUL-delimited arguments, cannot be {@code null}; it is not closed
+     * @param <OptProc> class of classProcessor
+     * @return new instance of classProcessor, after processing args
+     * @throws InvalidOption if the option processing cannot be performed completely, for any reason
+     * @throws IOException if reading args fails
+     */
+    public static <OptProc> OptProc process(final Class<OptProc> classProcessor, final ReadableByteChannel args) throws InvalidOption, IOException {
+        return GnoptParser.of(classProcessor).parse(args);
+    }
+
+    /**
+     * Processes arguments asynchronously, without blocking the calling thread.
+     * The option processor class is compiled (or its compiled form is found in the cache) now,
+     * so nothing but the processing itself runs on the executor.
+     *
+     * @param classProcessor {@link Class} of option processor to create, cannot be {@code null}
+     * @param executor executor to run the option processing, cannot be {@code null}
+     * @param args array of command-line arguments to analyze for options,
+     *             can be {@code null} (which is treated as an empty array), or
+     *             can have elements that are {@code null} (which are treated as empty strings)
+     * @param <OptProc> class of classProcessor
+     * @return future new instance of classProcessor, after processing args; it completes exceptionally
+     *      with {@link InvalidOption} if the option processing cannot be performed completely, for any reason
+     * @see GnoptParser#parseAsync(Executor, String...)
+     */
+    public static <OptProc> CompletableFuture<OptProc> processAsync(final Class<OptProc> classProcessor, final Executor executor, final String... args) {
+        return GnoptParser.of(classProcessor).parseAsync(executor, args);
+    }
 
-        return instanceProcessor;
+    /**
+     * Processes many argument vectors in parallel, each into its own new instance
+     * of the option processor. The option processor class is compiled only once.
+     *
+     * @param classProcessor {@link Class} of option processor to create, cannot be {@code null}
+     * @param argvs argument vectors, cannot be {@code null}
+     * @param <OptProc> class of classProcessor
+     * @return results (each either a new instance of classProcessor, or an error), in the same order as argvs
+     * @see GnoptParser#parseAll(List)
+     */
+    public static <OptProc> List<GnoptParser.Result<OptProc>> processAll(final Class<OptProc> classProcessor, final List<String[]> argvs) {
+        return GnoptParser.of(classProcessor).parseAll(argvs);
     }
 
 
 
     private static final Logger LOG = LoggerFactory.getLogger(Gnopt.class);
 
-    private final GnoptCompiler compilerProcessor;
+    /**
+     * The default executor for option processor methods marked with {@link GnoptConcurrent}.
+     */
+    static final Executor CONCURRENT_EXECUTOR = threadPerTaskExecutor("gnopt-concurrent");
+
+    private final GnoptDispatcher<OptProc> dispatcher;
     private final OptProc instanceProcessor;
 
     /**
@@ -58,98 +152,327 @@ public class Gnopt<OptProc> {
      */
     private boolean optionProcessingIsEnabled = true;
 
+    private final boolean responseFilesAreEnabled;
+
+    private final boolean abbreviationsAreEnabled;
+
+    /**
+     * The listener to notify, or null if there is none; read once, for the whole parse.
+     */
+    private final GnoptListener listener = GnoptListeners.current();
+
+    /**
+     * Whether to record GnoptDispatchEvents; checked once, for the whole parse.
+     */
+    private final boolean dispatchEvents = GnoptFlightRecorder.isRecording() && GnoptDispatchEvent.isTypeEnabled();
+
+    private final boolean trace = LOG.isTraceEnabled();
 
+    private final boolean concurrent;
+    private final Executor executor;
 
-    private Gnopt(final GnoptCompiler compilerProcessor, final OptProc instanceProcessor) {
-        this.compilerProcessor = Objects.requireNonNull(compilerProcessor);
+    /**
+     * Calls of concurrent option processor methods that have been started (but not joined), or null if none.
+     */
+    private List<CompletableFuture<Void>> pending;
+
+    /**
+     * Response files currently being expanded, to detect cycles of nested response files.
+     */
+    private Set<Path> activeResponseFiles;
+
+
+
+    Gnopt(final GnoptDispatcher<OptProc> dispatcher, final OptProc instanceProcessor, final boolean responseFilesAreEnabled, final boolean abbreviationsAreEnabled, final Executor executor) {
+        this.dispatcher = Objects.requireNonNull(dispatcher);
         this.instanceProcessor = Objects.requireNonNull(instanceProcessor);
+        this.responseFilesAreEnabled = responseFilesAreEnabled;
+        this.abbreviationsAreEnabled = abbreviationsAreEnabled;
+        this.concurrent = dispatcher.hasConcurrent();
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    void processArgs(final String[] args) throws InvalidOption {
+        InvalidOption failure = null;
+        try {
+            for (final String arg : Objects.requireNonNull(args)) {
+                processArg(Objects.toString(arg, ""));
+            }
+        } catch (final InvalidOption e) {
+            failure = e;
+        } catch (final RuntimeException | Error e) {
+            joinAfter(e);
+            throw e;
+        }
+        join(failure);
     }
 
-    private void process(final String[] args) throws InvalidOption {
-        for (final String arg : Objects.requireNonNull(args)) {
-            processArg(Objects.toString(arg, ""));
+    void processArgs(final Iterator<String> args) throws InvalidOption {
+        InvalidOption failure = null;
+        try {
+            while (args.hasNext()) {
+                processArg(Objects.toString(args.next(), ""));
+            }
+        } catch (final InvalidOption e) {
+            failure = e;
+        } catch (final RuntimeException | Error e) {
+            joinAfter(e);
+            throw e;
         }
+        join(failure);
     }
 
+    /*
+     * Scans the argument by index, without copying the option name or value, so that
+     * nothing is allocated per argument unless the processor's method takes an object
+     * (such as an Optional) as its value.
+     */
     private void processArg(final String arg) throws InvalidOption {
-        LOG.trace("processing argument/option: {}", Objects.requireNonNull(arg).isEmpty() ? "(empty argument string)" : arg);
-        if (this.optionProcessingIsEnabled && arg.startsWith(OPT_PREFIX)) {
-            final String opt = arg.substring(OPT_PREFIX.length());
-            if (opt.isEmpty()) {
+        if (this.trace) {
+            LOG.trace("processing argument/option: {}", Objects.requireNonNull(arg).isEmpty() ? "(empty argument string)" : arg);
+        }
+        if (this.responseFilesAreEnabled && this.optionProcessingIsEnabled && 1 < arg.length() && arg.charAt(0) == RESPONSE_FILE_PREFIX) {
+            processResponseFile(arg.substring(1));
+        } else if (this.optionProcessingIsEnabled && arg.startsWith(OPT_PREFIX)) {
+            final int start = OPT_PREFIX.length();
+            if (arg.length() == start) {
                 this.optionProcessingIsEnabled = false;
             } else {
-                processOption(opt);
+                processOption(arg, start);
             }
         } else {
             processNonOption(arg);
         }
     }
 
+    /*
+     * Each argument in the file goes straight through processArg, as it is read,
+     * so the file is never held in memory as a list of arguments.
+     */
+    private void processResponseFile(final String name) throws InvalidOption {
+        final Path path;
+        try {
+            path = Paths.get(name).toRealPath();
+        } catch (final IOException | InvalidPathException e) {
+            throw new InvalidOption(e);
+        }
 
+        if (Objects.isNull(this.activeResponseFiles)) {
+            this.activeResponseFiles = new HashSet<>();
+        }
+        if (!this.activeResponseFiles.add(path)) {
+            throw invalid(name, "response file includes itself");
+        }
 
-    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    private class NameValue {
-        private final String name;
-        private final Optional<String> value;
+        LOG.trace("expanding response file: {}", path);
+        try (final ResponseFileArguments args = new ResponseFileArguments(path)) {
+            while (args.hasNext()) {
+                processArg(args.next());
+            }
+        } catch (final IOException e) {
+            throw new InvalidOption(e);
+        } catch (final UncheckedIOException e) {
+            throw new InvalidOption(e.getCause());
+        } finally {
+            this.activeResponseFiles.remove(path);
+        }
+    }
 
-        private NameValue(final String name, final String value) {
-            this.name = name;
-            this.value = Optional.of(value);
+    private void processOption(final String arg, final int start) throws InvalidOption {
+        final int equals = arg.indexOf('=', start);
+        final int end = equals < 0 ? arg.length() : equals;
+        if (isUnnamedArgsName(arg, start, end)) {
+            throw invalid(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS);
+        }
+        if (start == end) {
+            // (for example, --=1) an empty name would be an abbreviation of every option
+            throw invalid("");
         }
+        if (this.abbreviationsAreEnabled) {
+            final List<String> names = this.dispatcher.complete(arg, start, end);
+            if (1 < names.size()) {
+                throw ambiguous(arg.substring(start, end).replace('-', '_'), names);
+            }
+            if (names.size() == 1) {
+                final String name = names.get(0);
+                process(name, 0, name.length(), equals < 0 ? null : arg, equals + 1);
+                return;
+            }
+        }
+        process(arg, start, end, equals < 0 ? null : arg, equals + 1);
+    }
+
+    private void processNonOption(final String value) throws InvalidOption {
+        final String name = GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS;
+        process(name, 0, name.length(), value, 0);
+    }
 
-        private NameValue(final String[] r) throws InvalidOption {
-            final String[] r2 = Arrays.copyOf(r, 2);
-            this.name = filterName(r2[0]);
-            if (this.name.equals(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS)) {
-                throw invalid(this.name);
+    private static boolean isUnnamedArgsName(final String arg, final int from, final int to) {
+        final String name = GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS;
+        if (to - from != name.length()) {
+            return false;
+        }
+        for (int i = from; i < to; ++i) {
+            final char c = arg.charAt(i);
+            if (c != name.charAt(i - from) && !(c == '-' && name.charAt(i - from) == '_')) {
+                return false;
             }
-            this.value = Optional.ofNullable(r2[1]);
         }
+        return true;
+    }
+
+
 
-        private String filterName(final String name) {
-            return name.replace('-', '_');
+    /*
+     * Only the options of methods marked with GnoptConcurrent are dispatched asynchronously;
+     * if there are none, the check costs nothing per argument.
+     */
+    private void process(final String arg, final int from, final int to, final String value, final int valueFrom) throws InvalidOption {
+        if (this.concurrent && this.dispatcher.isConcurrent(arg, from, to)) {
+            processConcurrently(arg, from, to, value, valueFrom);
+        } else {
+            processNow(arg, from, to, value, valueFrom);
         }
+    }
 
-        private void process() throws InvalidOption {
-            Gnopt.this.process(this.name, this.value);
+    private void processConcurrently(final String arg, final int from, final int to, final String value, final int valueFrom) throws InvalidOption {
+        if (Objects.isNull(this.pending)) {
+            this.pending = new ArrayList<>();
+        }
+        try {
+            this.pending.add(CompletableFuture.runAsync(() -> {
+                try {
+                    processNow(arg, from, to, value, valueFrom);
+                } catch (final InvalidOption e) {
+                    throw new CompletionException(e);
+                }
+            }, this.executor));
+        } catch (final RejectedExecutionException e) {
+            throw new InvalidOption(e);
         }
     }
 
+    /*
+     * Waits for all the concurrent method calls (if any) to finish, and then throws their
+     * failures, along with the given failure (if any), combined into one InvalidOption.
+     */
+    /*
+     * Waits for the concurrent calls already submitted before an unexpected exception
+     * (such as an UncheckedIOException from reading the arguments) propagates,
+     * so none is left running; their failures are added to it, as suppressed.
+     */
+    private void joinAfter(final Throwable unexpected) {
+        try {
+            join(null);
+        } catch (final InvalidOption failed) {
+            unexpected.addSuppressed(failed);
+        }
+    }
 
+    private void join(final InvalidOption failure) throws InvalidOption {
+        final List<InvalidOption> failures = new ArrayList<>();
+        if (Objects.nonNull(failure)) {
+            failures.add(failure);
+        }
+        if (Objects.nonNull(this.pending)) {
+            for (final CompletableFuture<Void> call : this.pending) {
+                try {
+                    call.join();
+                } catch (final CompletionException | CancellationException e) {
+                    final Throwable cause = Objects.requireNonNullElse(e.getCause(), e);
+                    failures.add(cause instanceof InvalidOption ? (InvalidOption)cause : new InvalidOption(cause));
+                }
+            }
+            this.pending = null;
+        }
 
-    private void processOption(final String keyEqualsValue) throws InvalidOption {
-        new NameValue(keyEqualsValue.split("=", 2)).process();
+        if (failures.size() == 1) {
+            throw failures.get(0);
+        }
+        if (1 < failures.size()) {
+            final StringJoiner messages = new StringJoiner("; ", failures.size() + " options failed: ", "");
+            failures.forEach(e -> messages.add(String.valueOf(e.getMessage())));
+            final InvalidOption combined = new InvalidOption(messages.toString());
+            failures.forEach(combined::addSuppressed);
+            throw combined;
+        }
     }
 
-    private void processNonOption(final String value) throws InvalidOption {
-        new NameValue(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS, value).process();
+    /*
+     * Instrumentation (see GnoptListener and GnoptDispatchEvent) is entirely skipped
+     * when there is no listener, and no recording (see GnoptFlightRecorder) with the JFR event enabled.
+     */
+    private void processNow(final String arg, final int from, final int to, final String value, final int valueFrom) throws InvalidOption {
+        if (Objects.isNull(this.listener) && !this.dispatchEvents) {
+            dispatch(arg, from, to, value, valueFrom);
+        } else {
+            processInstrumented(arg, from, to, value, valueFrom);
+        }
     }
 
+    private void processInstrumented(final String arg, final int from, final int to, final String value, final int valueFrom) throws InvalidOption {
+        final String name = arg.substring(from, to).replace('-', '_');
+        final GnoptDispatchEvent event = this.dispatchEvents ? new GnoptDispatchEvent() : null;
+        if (Objects.nonNull(event)) {
+            event.begin();
+        }
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            dispatch(arg, from, to, value, valueFrom);
+            success = true;
+        } catch (final InvalidOption e) {
+            if (Objects.nonNull(this.listener)) {
+                this.listener.failed(this.instanceProcessor.getClass(), name, e);
+            }
+            throw e;
+        } finally {
+            if (Objects.nonNull(event)) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.optionProcessor = this.instanceProcessor.getClass();
+                    event.option = name;
+                    event.success = success;
+                    event.commit();
+                }
+            }
+        }
+        if (Objects.nonNull(this.listener)) {
+            this.listener.dispatched(this.instanceProcessor.getClass(), name, System.nanoTime() - start);
+        }
+    }
 
-
-    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    private void process(final String name, final Optional<String> value) throws InvalidOption {
+    private void dispatch(final String arg, final int from, final int to, final String value, final int valueFrom) throws InvalidOption {
+        final boolean dispatched;
         try {
-            processor(name).invoke(this.instanceProcessor, value); // <----- !!!!!!! The main purpose of Gnopt is this line.
+            dispatched = this.dispatcher.dispatch(this.instanceProcessor, arg, from, to, value, valueFrom);
         } catch (final InvalidOption passThrough) {
             throw passThrough;
-        } catch (final InvocationTargetException unwrap) {
-            throw new InvalidOption(unwrap.getCause());
+        } catch (final GnoptCompiler.InvalidValueException badValue) {
+            throw invalidValue(arg.substring(from, to).replace('-', '_'), badValue);
         } catch (final Throwable wrap) {
             throw new InvalidOption(wrap);
         }
-    }
-
-    private Method processor(final String name) throws InvalidOption {
-        final Optional<Method> method = this.compilerProcessor.processor(name);
-        if (method.isEmpty()) {
-            throw invalid(name);
+        if (!dispatched) {
+            throw unknown(arg.substring(from, to).replace('-', '_'));
         }
-        return method.get();
     }
 
 
 
+    /*
+     * Only on this failure path are suggestions computed (and, the first time, their index built).
+     */
+    private InvalidOption unknown(final String name) {
+        if (!name.equals(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS)) {
+            final List<String> suggestions = this.dispatcher.suggest(name);
+            if (!suggestions.isEmpty()) {
+                return invalid(name, "invalid option (did you mean: " + String.join(", ", suggestions) + "?)");
+            }
+        }
+        return invalid(name);
+    }
+
     private static InvalidOption invalid(final String name) {
         if (name.equals(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS)) {
             return invalid(null, "no arguments are allowed");
@@ -158,7 +481,19 @@ public class Gnopt<OptProc> {
         return invalid(name, "invalid option");
     }
 
-    private static InvalidOption invalid(final String name, final String message) {
+    private static InvalidOption invalidValue(final String name, final GnoptCompiler.InvalidValueException badValue) {
+        if (name.equals(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS)) {
+            return invalid(null, badValue.getMessage() + " for argument");
+        }
+
+        return invalid(name, badValue.getMessage() + " for option");
+    }
+
+    private static InvalidOption ambiguous(final String name, final List<String> candidates) {
+        return new InvalidOption("ambiguous option \"" + name + "\" (could be: " + String.join(", ", candidates) + ")");
+    }
+
+    static InvalidOption invalid(final String name, final String message) {
         final String display;
         if (Objects.isNull(name)) {
             display = "";
@@ -170,11 +505,38 @@ public class Gnopt<OptProc> {
         return new InvalidOption(message + display);
     }
 
-    @SuppressWarnings("deprecation") // catching Throwable mitigates this
-    private static <OptProc> OptProc instantiate(final Class<OptProc> classProcessor) throws InvalidOption {
+    static <OptProc> GnoptDispatcher<OptProc> dispatcher(final Class<OptProc> classProcessor) {
+        final Optional<GnoptDispatcher<OptProc>> generated = GnoptDispatchers.find(classProcessor);
+        if (generated.isPresent()) {
+            return generated.get();
+        }
+        return new CompiledDispatcher<>(classProcessor, GnoptCompilerCache.get(classProcessor));
+    }
+
+    /*
+     * A new virtual thread per task, if available (Java 21 or later), otherwise a new daemon platform thread.
+     */
+    static Executor threadPerTaskExecutor(final String name) {
         try {
-            return classProcessor.newInstance();
-        } catch (final Throwable wrap) { // must catch Throwable, because newInstance
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final ThreadFactory factory = (ThreadFactory)Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            return call -> factory.newThread(call).start();
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOG.trace("virtual threads are not available; using platform threads for {}", name);
+            return call -> {
+                final Thread thread = new Thread(call, name);
+                thread.setDaemon(true);
+                thread.start();
+            };
+        }
+    }
+
+    static <OptProc> OptProc instantiate(final GnoptDispatcher<OptProc> dispatcher) throws InvalidOption {
+        try {
+            return dispatcher.instantiate();
+        } catch (final InvocationTargetException unwrap) {
+            throw new InvalidOption(unwrap.getCause());
+        } catch (final Throwable wrap) {
             throw new InvalidOption(wrap);
         }
     }
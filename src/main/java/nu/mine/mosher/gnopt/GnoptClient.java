@@ -0,0 +1,119 @@
+package nu.mine.mosher.gnopt;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * A client launcher for a {@link GnoptServer}: it sends its command line to the server,
+ * copies the output of the run to its own standard output and standard error,
+ * and exits with the run's exit status. For example:
+ * {@code java -cp ... nu.mine.mosher.gnopt.GnoptClient --socket=/run/user/1000/foobar.sock -- --something=testing infile}
+ *
+ * It loads none of the program's classes, so it starts as quickly as a JVM can
+ * (or faster still, if it is built as a native image).
+ */
+public final class GnoptClient {
+    /**
+     * Exit status when the client's own options are invalid.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    /**
+     * Runs a command line on a server, and exits with its exit status.
+     * The client's own options are parsed here directly (not by {@link Gnopt}),
+     * so that starting the client loads nothing but the protocol.
+     *
+     * @param args {@code --socket=path} (of the server's Unix domain socket) or
+     *             {@code --port=n} (of the server's loopback TCP port), then {@code --},
+     *             then the command line to send to the server
+     * @throws IOException if the server cannot be reached
+     */
+    public static void main(final String... args) throws IOException {
+        SocketAddress address = null;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith(Gnopt.OPT_PREFIX); ++i) {
+            final String arg = args[i];
+            if (arg.equals(Gnopt.OPT_PREFIX)) {
+                ++i;
+                break;
+            } else if (arg.startsWith(SOCKET)) {
+                address = GnoptProtocol.unixDomainSocketAddress(Paths.get(arg.substring(SOCKET.length())));
+            } else if (arg.startsWith(PORT)) {
+                try {
+                    address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(arg.substring(PORT.length())));
+                } catch (final IllegalArgumentException e) {
+                    usage("invalid port: " + arg.substring(PORT.length()));
+                }
+            } else {
+                usage("invalid option: " + arg);
+            }
+        }
+        if (Objects.isNull(address)) {
+            usage("missing option: --socket or --port");
+        }
+        System.exit(run(address, System.out, System.err, Arrays.copyOfRange(args, i, args.length)));
+    }
+
+    /**
+     * Runs a command line on a server, and copies its output (as it is received) to the given streams.
+     *
+     * @param address address of the server, cannot be {@code null}
+     * @param out stream to copy the standard output of the run to, cannot be {@code null}; it is not closed
+     * @param err stream to copy the standard error of the run to, cannot be {@code null}; it is not closed
+     * @param args command-line arguments to send,
+     *             can be {@code null} (which is treated as an empty array), or
+     *             can have elements that are {@code null} (which are treated as empty strings)
+     * @return exit status of the run
+     * @throws IOException if the server cannot be reached, or closes the connection before the run finishes
+     */
+    public static int run(final SocketAddress address, final OutputStream out, final OutputStream err, final String... args) throws IOException {
+        Objects.requireNonNull(out);
+        Objects.requireNonNull(err);
+        try (final SocketChannel server = GnoptProtocol.open(SocketChannel.class, Objects.requireNonNull(address))) {
+            server.connect(address);
+            GnoptProtocol.writeRequest(new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(server))), Objects.isNull(args) ? new String[0] : args);
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(server)));
+            final byte[] buffer = new byte[8192];
+            while (true) {
+                final byte type = in.readByte();
+                if (type == GnoptProtocol.FRAME_EXIT) {
+                    return in.readInt();
+                }
+                if (type != GnoptProtocol.FRAME_OUT && type != GnoptProtocol.FRAME_ERR) {
+                    throw new IOException("unexpected frame type: " + type);
+                }
+                final OutputStream to = type == GnoptProtocol.FRAME_OUT ? out : err;
+                for (int remaining = in.readInt(); 0 < remaining; ) {
+                    final int n = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                    if (n < 0) {
+                        throw new EOFException();
+                    }
+                    to.write(buffer, 0, n);
+                    remaining -= n;
+                }
+                to.flush();
+            }
+        } catch (final EOFException e) {
+            throw new IOException("the server closed the connection before the run finished", e);
+        }
+    }
+
+
+
+    private static final String SOCKET = "--socket=";
+    private static final String PORT = "--port=";
+
+    private GnoptClient() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    private static void usage(final String message) {
+        System.err.println(message);
+        System.err.println("usage: GnoptClient (--socket=path | --port=n) -- [arguments...]");
+        System.exit(EXIT_USAGE);
+    }
+}
@@ -0,0 +1,30 @@
+package nu.mine.mosher.gnopt;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event for the compilation of an option processor class
+ * by {@link nu.mine.mosher.gnopt.compiler.GnoptCompiler#compile(Class)}.
+ * It is created only while a recording is running (see {@link GnoptFlightRecorder}); it can be configured
+ * (for example, given a threshold) with the usual JFR settings, as {@code nu.mine.mosher.gnopt.Compile}.
+ */
+@Name("nu.mine.mosher.gnopt.Compile")
+@Label("Gnopt Compile")
+@Category("Gnopt")
+@Description("Compilation of an option processor class")
+@StackTrace(false)
+public final class GnoptCompileEvent extends Event {
+    @Label("Option Processor")
+    public Class<?> optionProcessor;
+
+    @Label("Methods")
+    @Description("Number of methods that process options")
+    public int methods;
+
+    @Label("Fields")
+    @Description("Number of fields that options are stored into")
+    public int fields;
+
+    @Label("Success")
+    public boolean success;
+}
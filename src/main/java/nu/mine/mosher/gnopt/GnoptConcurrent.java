@@ -0,0 +1,24 @@
+package nu.mine.mosher.gnopt;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks an option processor method as independent of all the other methods:
+ * it can be called concurrently with them (typically, because it does slow I/O,
+ * such as loading a file). For example:
+ *
+ * <pre>{@code
+ * @GnoptConcurrent public void load_catalog(Path catalog) { this.catalog = Catalog.load(catalog); }
+ * }</pre>
+ *
+ * Each call of a marked method is run asynchronously (see {@link GnoptParser#withExecutor(java.util.concurrent.Executor)}),
+ * while the other options continue to be processed, in order. All the calls finish
+ * before the option processing returns, and any failures are combined into one
+ * {@link Gnopt.InvalidOption}. A marked method must only update state that no other
+ * method uses (or must synchronize its access to that state itself).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface GnoptConcurrent {
+}
@@ -0,0 +1,19 @@
+package nu.mine.mosher.gnopt;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks an option processor class for which the {@code gnopt-processor}
+ * annotation processor should generate a {@link GnoptDispatcher} at build time.
+ * The generated class is named after the option processor class, with any
+ * enclosing class names joined by underscores, followed by {@code GnoptDispatcher}
+ * (for example, {@code demo.FoobarOpts} gets {@code demo.FoobarOptsGnoptDispatcher}).
+ *
+ * When a generated dispatcher is found, {@link Gnopt#process(Class, String...)}
+ * uses it instead of compiling the option processor class by reflection.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GnoptDispatch {
+}
@@ -0,0 +1,34 @@
+package nu.mine.mosher.gnopt;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event for the dispatch of one argument to its option processor
+ * method (or field). It has a default threshold of 1 ms, so only slow option processor
+ * methods are recorded; it can be configured with the usual JFR settings, as
+ * {@code nu.mine.mosher.gnopt.Dispatch}. Gnopt checks whether a recording is running
+ * (see {@link GnoptFlightRecorder}), and the event is enabled, once per parse,
+ * and does nothing extra if not.
+ */
+@Name("nu.mine.mosher.gnopt.Dispatch")
+@Label("Gnopt Dispatch")
+@Category("Gnopt")
+@Description("Dispatch of an argument to its option processor method")
+@Threshold("1 ms")
+public final class GnoptDispatchEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(GnoptDispatchEvent.class);
+
+    @Label("Option Processor")
+    public Class<?> optionProcessor;
+
+    @Label("Option")
+    @Description("Name of the option, or __ for a non-option argument")
+    public String option;
+
+    @Label("Success")
+    public boolean success;
+
+    static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
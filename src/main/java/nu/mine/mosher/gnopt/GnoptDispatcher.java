@@ -0,0 +1,167 @@
+package nu.mine.mosher.gnopt;
+
+import java.util.*;
+
+/**
+ * Creates option processor instances, and dispatches options to them.
+ * Implementations are normally generated at build time by the {@code gnopt-processor}
+ * annotation processor, for classes marked with {@link GnoptDispatch}.
+ *
+ * @param <OptProc> class of option processor
+ */
+public interface GnoptDispatcher<OptProc> {
+    /**
+     * Suffix appended to the (flattened) name of an option processor class
+     * to form the name of its generated dispatcher class.
+     */
+    String CLASS_NAME_SUFFIX = "GnoptDispatcher";
+
+    /**
+     * Creates a new instance of the option processor.
+     * @return new option processor instance
+     * @throws ReflectiveOperationException if the instance cannot be created reflectively
+     */
+    OptProc instantiate() throws ReflectiveOperationException;
+
+    /**
+     * Calls the method of the given option processor that processes the given option.
+     *
+     * @param instance option processor instance, cannot be {@code null}
+     * @param name name of the option, with any hyphen-minus characters already changed to underscores
+     * @param value value of the option
+     * @return {@code true} if the option was dispatched, {@code false} if there is no such option
+     * @throws Throwable anything thrown by the option processor method
+     */
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    boolean dispatch(OptProc instance, String name, Optional<String> value) throws Throwable;
+
+    /**
+     * Calls the method of the given option processor that processes the option whose name
+     * is the given region of a string (typically, the whole command-line argument).
+     * The name can contain hyphen-minus characters, which are treated as underscores.
+     * Implementations can override this to look up the name without copying it;
+     * by default, it copies the name and calls {@link GnoptDispatcher#dispatch(Object, String, Optional)}.
+     *
+     * @param instance option processor instance, cannot be {@code null}
+     * @param s string containing the name of the option
+     * @param from index of the first character of the name
+     * @param to index after the last character of the name
+     * @param value value of the option
+     * @return {@code true} if the option was dispatched, {@code false} if there is no such option
+     * @throws Throwable anything thrown by the option processor method
+     */
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    default boolean dispatch(final OptProc instance, final String s, final int from, final int to, final Optional<String> value) throws Throwable {
+        return dispatch(instance, s.substring(from, to).replace('-', '_'), value);
+    }
+
+    /**
+     * Calls the method of the given option processor that processes the option whose name
+     * is the given region of a string, passing it the value that is the region of {@code value}
+     * starting at index {@code valueFrom}. Implementations can override this to pass the value
+     * to the method without wrapping it in an {@link Optional} (or copying it);
+     * by default, it copies the value and calls
+     * {@link GnoptDispatcher#dispatch(Object, String, int, int, Optional)}.
+     *
+     * @param instance option processor instance, cannot be {@code null}
+     * @param s string containing the name of the option
+     * @param from index of the first character of the name
+     * @param to index after the last character of the name
+     * @param value string containing the value of the option, or {@code null} if the option has no value
+     * @param valueFrom index of the first character of the value
+     * @return {@code true} if the option was dispatched, {@code false} if there is no such option
+     * @throws Throwable anything thrown by the option processor method
+     */
+    default boolean dispatch(final OptProc instance, final String s, final int from, final int to, final String value, final int valueFrom) throws Throwable {
+        return dispatch(instance, s, from, to, Objects.isNull(value) ? Optional.empty() : Optional.of(value.substring(valueFrom)));
+    }
+
+    /**
+     * Checks whether any option is processed by a method marked with {@link GnoptConcurrent}.
+     * If not, {@link GnoptDispatcher#isConcurrent(String)} is never called.
+     * By default, this returns {@code false}.
+     *
+     * @return {@code true} if any option can be dispatched concurrently
+     */
+    default boolean hasConcurrent() {
+        return false;
+    }
+
+    /**
+     * Checks whether the given option is processed by a method marked with {@link GnoptConcurrent}.
+     * By default, this returns {@code false}.
+     *
+     * @param name name of the option, with any hyphen-minus characters already changed to underscores
+     * @return {@code true} if the option can be dispatched concurrently
+     */
+    default boolean isConcurrent(final String name) {
+        return false;
+    }
+
+    /**
+     * Checks whether the option whose name is the given region of a string
+     * is processed by a method marked with {@link GnoptConcurrent}.
+     * Implementations can override this to look up the name without copying it;
+     * by default, it copies the name and calls {@link GnoptDispatcher#isConcurrent(String)}.
+     *
+     * @param s string containing the name of the option
+     * @param from index of the first character of the name
+     * @param to index after the last character of the name
+     * @return {@code true} if the option can be dispatched concurrently
+     */
+    default boolean isConcurrent(final String s, final int from, final int to) {
+        return isConcurrent(s.substring(from, to).replace('-', '_'));
+    }
+
+    /**
+     * Finds the names of the options that begin with the given region of a string,
+     * as a GNU-style abbreviation (see {@link GnoptParser#withAbbreviations(boolean)}).
+     * If the region is the whole name of an option, only that name is returned.
+     * By default, this returns an empty list (so abbreviations are not supported).
+     *
+     * @param s string containing the (abbreviated) name of the option
+     * @param from index of the first character of the name
+     * @param to index after the last character of the name
+     * @return names (with underscores) of the matching options, sorted
+     */
+    default List<String> complete(final String s, final int from, final int to) {
+        return List.of();
+    }
+
+    /**
+     * Finds the names of the options closest to the given (invalid) option name,
+     * to suggest to the user. This is called only when an option is invalid.
+     * By default, this returns an empty list (so nothing is suggested).
+     *
+     * @param name name of the option, with any hyphen-minus characters already changed to underscores
+     * @return names (with underscores) of the closest options, closest first
+     * @see nu.mine.mosher.gnopt.compiler.GnoptSuggester
+     */
+    default List<String> suggest(final String name) {
+        return List.of();
+    }
+
+    /**
+     * Implements {@link GnoptDispatcher#complete(String, int, int)} by binary search
+     * of a sorted array of option names. Generated dispatchers use this.
+     *
+     * @param sortedNames names of all the options (with underscores, and not including the
+     *                    name of the method for non-option arguments), in natural order
+     * @param s string containing the (abbreviated) name of the option
+     * @param from index of the first character of the name
+     * @param to index after the last character of the name
+     * @return names of the matching options, sorted
+     */
+    static List<String> complete(final String[] sortedNames, final String s, final int from, final int to) {
+        final String prefix = s.substring(from, to).replace('-', '_');
+        int i = Arrays.binarySearch(sortedNames, prefix);
+        if (0 <= i) {
+            return List.of(sortedNames[i]);
+        }
+        final List<String> names = new ArrayList<>();
+        for (i = -(i + 1); i < sortedNames.length && sortedNames[i].startsWith(prefix); ++i) {
+            names.add(sortedNames[i]);
+        }
+        return Collections.unmodifiableList(names);
+    }
+}
@@ -0,0 +1,54 @@
+package nu.mine.mosher.gnopt;
+
+import org.slf4j.*;
+
+import java.util.Optional;
+
+/**
+ * Finds generated {@link GnoptDispatcher}s, at most once per option processor class.
+ */
+final class GnoptDispatchers {
+    private static final Logger LOG = LoggerFactory.getLogger(GnoptDispatchers.class);
+
+    private static final ClassValue<Optional<GnoptDispatcher<?>>> DISPATCHERS = new ClassValue<>() {
+        @Override
+        protected Optional<GnoptDispatcher<?>> computeValue(final Class<?> classProcessor) {
+            return load(classProcessor);
+        }
+    };
+
+    private GnoptDispatchers() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    @SuppressWarnings("unchecked")
+    static <OptProc> Optional<GnoptDispatcher<OptProc>> find(final Class<OptProc> classProcessor) {
+        return DISPATCHERS.get(classProcessor).map(d -> (GnoptDispatcher<OptProc>)d);
+    }
+
+    static String nameOf(final Class<?> classProcessor) {
+        final String name = classProcessor.getName();
+        final String pkg = classProcessor.getPackageName();
+        final String simple = pkg.isEmpty() ? name : name.substring(pkg.length() + 1);
+        return (pkg.isEmpty() ? "" : pkg + ".") + simple.replace('$', '_') + GnoptDispatcher.CLASS_NAME_SUFFIX;
+    }
+
+    private static Optional<GnoptDispatcher<?>> load(final Class<?> classProcessor) {
+        final String name = nameOf(classProcessor);
+        try {
+            final Class<?> classDispatcher = Class.forName(name, true, classProcessor.getClassLoader());
+            if (!GnoptDispatcher.class.isAssignableFrom(classDispatcher)) {
+                LOG.warn("Ignoring generated dispatcher that does not implement {}: {}", GnoptDispatcher.class.getName(), name);
+                return Optional.empty();
+            }
+            LOG.trace("Using generated dispatcher {}", name);
+            return Optional.of((GnoptDispatcher<?>)classDispatcher.getConstructor().newInstance());
+        } catch (final ClassNotFoundException | LinkageError notGenerated) {
+            LOG.trace("No generated dispatcher found for {}", classProcessor);
+            return Optional.empty();
+        } catch (final ReflectiveOperationException e) {
+            LOG.warn("Cannot instantiate generated dispatcher {}", name, e);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package nu.mine.mosher.gnopt;
+
+import jdk.jfr.*;
+
+import java.util.Objects;
+
+/**
+ * Tells Gnopt whether to create its Java Flight Recorder events ({@link GnoptCompileEvent} and
+ * {@link GnoptDispatchEvent}): only while a recording is running. Which events a recording includes,
+ * and their thresholds, are configured as usual, by the recording's settings (for example, a {@code .jfc} file).
+ *
+ * Until JFR has been initialized (by {@code -XX:StartFlightRecording}, {@code jcmd JFR.start},
+ * or the JFR API), checking this loads only {@link FlightRecorder} itself, so JFR costs
+ * nothing at startup. Once it has been, a listener keeps track of the running recordings.
+ */
+public final class GnoptFlightRecorder {
+    /**
+     * Checks whether a recording is running.
+     * Callers should read this once per unit of work (for example, once per parse),
+     * and skip all JFR events if it is {@code false}.
+     *
+     * @return {@code true} if events should be created
+     */
+    public static boolean isRecording() {
+        if (!listening) {
+            if (!AVAILABLE || !FlightRecorder.isInitialized()) {
+                return false;
+            }
+            listen();
+        }
+        return recording;
+    }
+
+
+
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private static volatile boolean listening;
+    private static volatile boolean recording;
+
+    private GnoptFlightRecorder() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    private static synchronized void listen() {
+        if (!listening) {
+            Jfr.listen();
+            listening = true;
+        }
+    }
+
+    /*
+     * Everything that listens to JFR is here, so that it is not loaded until JFR has been initialized.
+     */
+    private static final class Jfr implements FlightRecorderListener {
+        private static void listen() {
+            FlightRecorder.addListener(new Jfr());
+            update(FlightRecorder.getFlightRecorder());
+        }
+
+        @Override
+        public void recorderInitialized(final FlightRecorder recorder) {
+            update(recorder);
+        }
+
+        @Override
+        public void recordingStateChanged(final Recording changed) {
+            update(FlightRecorder.getFlightRecorder());
+        }
+
+        private static void update(final FlightRecorder recorder) {
+            recording = Objects.nonNull(recorder) && recorder.getRecordings().stream().anyMatch(r -> r.getState() == RecordingState.RUNNING);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package nu.mine.mosher.gnopt;
+
+/**
+ * Receives notifications of Gnopt's compiling and parsing, for instrumentation.
+ * Register a listener with {@link GnoptListeners#register(GnoptListener)}, or
+ * (as a service provider) in {@code META-INF/services/nu.mine.mosher.gnopt.GnoptListener}.
+ * When no listener is registered, Gnopt does no extra work at all (in particular,
+ * it does not read the clock, or build option names).
+ *
+ * Every method has an empty default implementation, so a listener only
+ * needs to implement the notifications it wants. Listeners are called
+ * on the thread doing the work, so they must be thread-safe, and fast.
+ * Any {@link RuntimeException} thrown by a listener is logged and ignored.
+ */
+public interface GnoptListener {
+    /**
+     * Called before an option processor class is compiled by reflection.
+     * @param classProcessor option processor class
+     */
+    default void compileStarted(final Class<?> classProcessor) {
+    }
+
+    /**
+     * Called after an option processor class is compiled by reflection, whether or not it succeeded.
+     * @param classProcessor option processor class
+     * @param nanos elapsed time, in nanoseconds
+     * @param success {@code true} if the class compiled successfully
+     */
+    default void compileFinished(final Class<?> classProcessor, final long nanos, final boolean success) {
+    }
+
+    /**
+     * Called after an argument is successfully dispatched to its option processor method.
+     * @param classProcessor option processor class
+     * @param name name of the option (with any hyphen-minus characters changed to underscores),
+     *             or {@code __} for a non-option argument
+     * @param nanos elapsed time of the dispatch (mostly, of the option processor method), in nanoseconds
+     */
+    default void dispatched(final Class<?> classProcessor, final String name, final long nanos) {
+    }
+
+    /**
+     * Called when an argument cannot be processed (just before the exception is thrown to the caller).
+     * @param classProcessor option processor class
+     * @param name name of the option (with any hyphen-minus characters changed to underscores),
+     *             or {@code __} for a non-option argument
+     * @param failure the exception that will be thrown
+     */
+    default void failed(final Class<?> classProcessor, final String name, final Gnopt.InvalidOption failure) {
+    }
+}
@@ -0,0 +1,122 @@
+package nu.mine.mosher.gnopt;
+
+import org.slf4j.*;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The registry of {@link GnoptListener}s. Listeners found by {@link ServiceLoader}
+ * are registered automatically, when this class is initialized.
+ */
+public final class GnoptListeners {
+    /**
+     * Registers a listener. Parses that are already in progress are not affected.
+     * @param listener listener to register, cannot be {@code null}
+     */
+    public static void register(final GnoptListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+        update();
+    }
+
+    /**
+     * Unregisters a listener, if it is registered.
+     * @param listener listener to unregister
+     */
+    public static void unregister(final GnoptListener listener) {
+        listeners.remove(listener);
+        update();
+    }
+
+    /**
+     * Gets the listener to notify: one that notifies all registered listeners
+     * (and ignores their {@link RuntimeException}s).
+     * Callers should read this once per unit of work (for example, once per parse),
+     * and skip all instrumentation if it is {@code null}.
+     *
+     * @return listener, or {@code null} if no listeners are registered
+     */
+    public static GnoptListener current() {
+        return current;
+    }
+
+
+
+    private static final Logger LOG = LoggerFactory.getLogger(GnoptListeners.class);
+
+    private static final List<GnoptListener> listeners = new CopyOnWriteArrayList<>();
+    private static volatile GnoptListener current;
+
+    static {
+        for (final GnoptListener listener : ServiceLoader.load(GnoptListener.class)) {
+            LOG.trace("Registering listener service {}", listener);
+            listeners.add(listener);
+        }
+        update();
+    }
+
+    private GnoptListeners() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    private static synchronized void update() {
+        final GnoptListener[] array = listeners.toArray(new GnoptListener[0]);
+        current = array.length == 0 ? null : new Multicast(array);
+    }
+
+    private static final class Multicast implements GnoptListener {
+        private final GnoptListener[] listeners;
+
+        private Multicast(final GnoptListener[] listeners) {
+            this.listeners = listeners;
+        }
+
+        @Override
+        public void compileStarted(final Class<?> classProcessor) {
+            for (final GnoptListener listener : this.listeners) {
+                try {
+                    listener.compileStarted(classProcessor);
+                } catch (final RuntimeException e) {
+                    ignore(listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void compileFinished(final Class<?> classProcessor, final long nanos, final boolean success) {
+            for (final GnoptListener listener : this.listeners) {
+                try {
+                    listener.compileFinished(classProcessor, nanos, success);
+                } catch (final RuntimeException e) {
+                    ignore(listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void dispatched(final Class<?> classProcessor, final String name, final long nanos) {
+            for (final GnoptListener listener : this.listeners) {
+                try {
+                    listener.dispatched(classProcessor, name, nanos);
+                } catch (final RuntimeException e) {
+                    ignore(listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void failed(final Class<?> classProcessor, final String name, final Gnopt.InvalidOption failure) {
+            for (final GnoptListener listener : this.listeners) {
+                try {
+                    listener.failed(classProcessor, name, failure);
+                } catch (final RuntimeException e) {
+                    ignore(listener, e);
+                }
+            }
+        }
+
+        private static void ignore(final GnoptListener listener, final RuntimeException e) {
+            LOG.warn("Ignoring exception thrown by listener {}", listener, e);
+        }
+    }
+}
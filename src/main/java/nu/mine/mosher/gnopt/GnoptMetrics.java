@@ -0,0 +1,312 @@
+package nu.mine.mosher.gnopt;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A {@link GnoptListener} that keeps counters and latency histograms, per option,
+ * and exposes them through JMX (as {@link GnoptMetricsMXBean}), under the name
+ * {@link GnoptMetrics#OBJECT_NAME}. Install it once, at startup:
+ *
+ * <pre>{@code
+ * GnoptMetrics.install();
+ * }</pre>
+ *
+ * Recording a dispatch does not allocate anything, once the option has been seen.
+ * Latencies are kept in histograms with power-of-two buckets: bucket {@code i}
+ * counts dispatches that took from 2<sup>i</sup> to 2<sup>i+1</sup> nanoseconds.
+ *
+ * Statistics are kept only for the options that each option processor class defines;
+ * failures of any other (unknown) option names are counted together, as the option
+ * {@link GnoptMetrics#UNKNOWN}, so that untrusted arguments cannot make the statistics grow.
+ * Statistics do not keep option processor classes (or their class loaders) from being unloaded.
+ */
+public final class GnoptMetrics implements GnoptListener, GnoptMetricsMXBean {
+    /**
+     * JMX object name of the installed instance.
+     */
+    public static final String OBJECT_NAME = "nu.mine.mosher.gnopt:type=GnoptMetrics";
+
+    /**
+     * Name under which the failures of all unknown options of a class are counted.
+     */
+    public static final String UNKNOWN = "(unknown)";
+
+    /**
+     * Installs the metrics: registers an instance as a {@link GnoptListener},
+     * and as a platform MBean. If they are already installed, this does nothing.
+     *
+     * @return the installed instance
+     * @throws IllegalStateException if the MBean cannot be registered
+     */
+    public static synchronized GnoptMetrics install() {
+        if (Objects.isNull(installed)) {
+            final GnoptMetrics metrics = new GnoptMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+            } catch (final JMException e) {
+                throw new IllegalStateException(e);
+            }
+            GnoptListeners.register(metrics);
+            installed = metrics;
+        }
+        return installed;
+    }
+
+    /**
+     * Uninstalls the metrics, if they are installed.
+     */
+    public static synchronized void uninstall() {
+        if (Objects.nonNull(installed)) {
+            GnoptListeners.unregister(installed);
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+            } catch (final JMException e) {
+                throw new IllegalStateException(e);
+            }
+            installed = null;
+        }
+    }
+
+    /**
+     * Statistics of one option.
+     */
+    public static final class OptionStatistics {
+        private final long count;
+        private final long failures;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+
+        private OptionStatistics(final Stats stats) {
+            this.count = stats.count.sum();
+            this.failures = stats.failures.sum();
+            this.totalNanos = stats.totalNanos.sum();
+            this.maxNanos = stats.maxNanos.get();
+            this.histogram = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; ++i) {
+                this.histogram[i] = stats.histogram.get(i);
+            }
+        }
+
+        /**
+         * @return number of successful dispatches
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return number of failures
+         */
+        public long getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * @return total time of successful dispatches, in nanoseconds
+         */
+        public long getTotalNanos() {
+            return this.totalNanos;
+        }
+
+        /**
+         * @return longest time of any successful dispatch, in nanoseconds
+         */
+        public long getMaxNanos() {
+            return this.maxNanos;
+        }
+
+        /**
+         * @return latency histogram: bucket {@code i} counts dispatches that took from
+         *      2<sup>i</sup> to 2<sup>i+1</sup> nanoseconds
+         */
+        public long[] getHistogram() {
+            return this.histogram.clone();
+        }
+
+        /**
+         * @return upper bound of the bucket containing the median latency, in nanoseconds (or 0 if there are no dispatches)
+         */
+        public long getP50Nanos() {
+            return percentile(50);
+        }
+
+        /**
+         * @return upper bound of the bucket containing the 99th percentile latency, in nanoseconds (or 0 if there are no dispatches)
+         */
+        public long getP99Nanos() {
+            return percentile(99);
+        }
+
+        private long percentile(final int p) {
+            final long total = Arrays.stream(this.histogram).sum();
+            final long rank = (total * p + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKETS && 0 < rank; ++i) {
+                seen += this.histogram[i];
+                if (rank <= seen) {
+                    return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << (i + 1);
+                }
+            }
+            return 0;
+        }
+    }
+
+    @Override
+    public void compileFinished(final Class<?> classProcessor, final long nanos, final boolean success) {
+        this.compilations.increment();
+        this.compileNanos.add(nanos);
+        if (!success) {
+            this.compileFailures.increment();
+        }
+    }
+
+    @Override
+    public void dispatched(final Class<?> classProcessor, final String name, final long nanos) {
+        this.dispatches.increment();
+        stats(classProcessor, name).record(nanos);
+    }
+
+    @Override
+    public void failed(final Class<?> classProcessor, final String name, final Gnopt.InvalidOption failure) {
+        this.failures.increment();
+        final PerClass perClass = this.options.get(classProcessor);
+        final Stats stats = perClass.names.get(name);
+        if (Objects.nonNull(stats)) {
+            stats.failures.increment();
+        } else if (defines(classProcessor, name)) {
+            stats(classProcessor, name).failures.increment();
+        } else {
+            perClass.unknown.failures.increment();
+        }
+    }
+
+    @Override
+    public long getCompilations() {
+        return this.compilations.sum();
+    }
+
+    @Override
+    public long getCompileFailures() {
+        return this.compileFailures.sum();
+    }
+
+    @Override
+    public long getCompileNanos() {
+        return this.compileNanos.sum();
+    }
+
+    @Override
+    public long getDispatches() {
+        return this.dispatches.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return this.failures.sum();
+    }
+
+    @Override
+    public Map<String, OptionStatistics> getOptions() {
+        final Map<String, OptionStatistics> map = new TreeMap<>();
+        for (final Class<?> cls : classes()) {
+            final PerClass perClass = this.options.get(cls);
+            perClass.names.forEach((name, stats) -> map.put(cls.getName() + " " + Gnopt.OPT_PREFIX + name, new OptionStatistics(stats)));
+            if (0 < perClass.unknown.failures.sum()) {
+                map.put(cls.getName() + " " + UNKNOWN, new OptionStatistics(perClass.unknown));
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public void reset() {
+        this.compilations.reset();
+        this.compileFailures.reset();
+        this.compileNanos.reset();
+        this.dispatches.reset();
+        this.failures.reset();
+        for (final Class<?> cls : classes()) {
+            this.options.remove(cls);
+        }
+    }
+
+
+
+    private static final int BUCKETS = Long.SIZE;
+
+    private static GnoptMetrics installed;
+
+    private final LongAdder compilations = new LongAdder();
+    private final LongAdder compileFailures = new LongAdder();
+    private final LongAdder compileNanos = new LongAdder();
+    private final LongAdder dispatches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    /**
+     * The classes that have statistics (weakly held), only to list them.
+     */
+    private final Map<Class<?>, Boolean> classes = Collections.synchronizedMap(new WeakHashMap<>());
+    private final ClassValue<PerClass> options = new ClassValue<>() {
+        @Override
+        protected PerClass computeValue(final Class<?> classProcessor) {
+            GnoptMetrics.this.classes.put(classProcessor, Boolean.TRUE);
+            return new PerClass();
+        }
+    };
+
+    /*
+     * Held by ClassValue, so it must not refer to the class.
+     */
+    private static final class PerClass {
+        private final Map<String, Stats> names = new ConcurrentHashMap<>();
+        private final Stats unknown = new Stats();
+    }
+
+    private static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private void record(final long nanos) {
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulateAndGet(nanos, Math::max);
+            this.histogram.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(nanos, 1L)));
+        }
+    }
+
+    GnoptMetrics() {
+    }
+
+    private List<Class<?>> classes() {
+        synchronized (this.classes) {
+            return new ArrayList<>(this.classes.keySet());
+        }
+    }
+
+    /*
+     * Only on the failure path, for an option not seen before: whether the class defines it.
+     */
+    private static boolean defines(final Class<?> classProcessor, final String name) {
+        try {
+            return Gnopt.dispatcher(classProcessor).complete(name, 0, name.length()).contains(name);
+        } catch (final RuntimeException e) {
+            return false;
+        }
+    }
+
+    private Stats stats(final Class<?> classProcessor, final String name) {
+        final Map<String, Stats> names = this.options.get(classProcessor).names;
+        final Stats stats = names.get(name);
+        if (Objects.nonNull(stats)) {
+            return stats;
+        }
+        return names.computeIfAbsent(name, k -> new Stats());
+    }
+}
@@ -0,0 +1,45 @@
+package nu.mine.mosher.gnopt;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link GnoptMetrics}: counters and latency histograms
+ * of Gnopt's compiling and parsing.
+ */
+public interface GnoptMetricsMXBean {
+    /**
+     * @return number of option processor classes compiled by reflection
+     */
+    long getCompilations();
+
+    /**
+     * @return number of option processor classes that failed to compile
+     */
+    long getCompileFailures();
+
+    /**
+     * @return total time spent compiling option processor classes, in nanoseconds
+     */
+    long getCompileNanos();
+
+    /**
+     * @return number of arguments dispatched successfully
+     */
+    long getDispatches();
+
+    /**
+     * @return number of arguments that could not be processed
+     */
+    long getFailures();
+
+    /**
+     * @return statistics for each option, keyed by option processor class name and option name
+     *      (for example, {@code demo.FoobarOpts --verbose})
+     */
+    Map<String, GnoptMetrics.OptionStatistics> getOptions();
+
+    /**
+     * Resets all counters and histograms to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,27 @@
+package nu.mine.mosher.gnopt;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a public field of an option processor class as an option.
+ * The option's value is converted to the type of the field (any of the types
+ * supported for option processor method arguments), and stored directly
+ * into the field, without calling any method. For example:
+ *
+ * <pre>{@code
+ * @GnoptOption public int port = 80;            // --port=8080
+ * @GnoptOption("dry-run") public boolean dryRun; // --dry-run
+ * }</pre>
+ *
+ * The field must be public, and cannot be static or final.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface GnoptOption {
+    /**
+     * Name of the option.
+     * @return name of the option, or empty (the default) to use the name of the field
+     */
+    String value() default "";
+}
@@ -0,0 +1,383 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+
+import java.io.*;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+ * A reusable option parser for one option processor class.
+ * Build it once, with {@link GnoptParser#of(Class)}, and then call
+ * {@link GnoptParser#parse(String...)} as many times as needed.
+ *
+ * A parser is immutable, and can be shared across threads: all the state
+ * of one parse (such as whether the "--" terminator has been seen) is
+ * confined to that call.
+ *
+ * @param <OptProc> class of option processor
+ */
+public final class GnoptParser<OptProc> {
+    /**
+     * Builds a parser for the given option processor class.
+     * The class is compiled (or its generated {@link GnoptDispatcher} is found) immediately.
+     *
+     * @param classProcessor {@link Class} of option processor, cannot be {@code null}
+     * @param <OptProc> class of classProcessor
+     * @return new parser
+     * @throws GnoptCompiler.InvalidOptionProcessorException if the classProcessor is invalid
+     */
+    public static <OptProc> GnoptParser<OptProc> of(final Class<OptProc> classProcessor) {
+        return new GnoptParser<>(Gnopt.dispatcher(Objects.requireNonNull(classProcessor)), false, false, Gnopt.CONCURRENT_EXECUTOR);
+    }
+
+    /**
+     * Returns a parser like this one, but with response file expansion enabled or disabled.
+     * When enabled, an argument of the form {@code @file} (before any "--" terminator)
+     * is replaced by the arguments in the file, which can in turn contain {@code @file} arguments.
+     * The file is memory-mapped and split lazily, and each argument is processed as it is read.
+     * Response file expansion is disabled by default.
+     *
+     * @param enable {@code true} to enable response file expansion
+     * @return parser with the given setting
+     */
+    public GnoptParser<OptProc> withResponseFiles(final boolean enable) {
+        return new GnoptParser<>(this.dispatcher, enable, this.abbreviations, this.executor);
+    }
+
+    /**
+     * Returns a parser like this one, but with GNU-style abbreviations of option names
+     * enabled or disabled. When enabled, an option can be given by any prefix of its name
+     * that is not a prefix of any other option's name (for example, {@code --verb} for
+     * {@code --verbose}); an ambiguous prefix is an error that lists all the candidates.
+     * An exact name always matches its own option. Each option name is looked up
+     * by prefix (see {@link GnoptDispatcher#complete(String, int, int)}), in a trie
+     * built when the option processor class is compiled (or, for a generated
+     * dispatcher, in a sorted array).
+     * Abbreviations are disabled by default.
+     *
+     * @param enable {@code true} to enable abbreviations
+     * @return parser with the given setting
+     */
+    public GnoptParser<OptProc> withAbbreviations(final boolean enable) {
+        return new GnoptParser<>(this.dispatcher, this.responseFiles, enable, this.executor);
+    }
+
+    /**
+     * Returns a parser like this one, but which runs the option processor methods
+     * marked with {@link GnoptConcurrent} using the given {@link Executor}.
+     * By default, each such method call runs in a new virtual thread (on Java 21 or later),
+     * or in a new daemon platform thread (on earlier versions).
+     *
+     * @param executor executor to run the concurrent option processor methods, cannot be {@code null}
+     * @return parser with the given setting
+     */
+    public GnoptParser<OptProc> withExecutor(final Executor executor) {
+        return new GnoptParser<>(this.dispatcher, this.responseFiles, this.abbreviations, Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Creates a new option processor instance, and processes the given arguments with it.
+     *
+     * @param args array of command-line arguments to analyze for options,
+     *             can be {@code null} (which is treated as an empty array), or
+     *             can have elements that are {@code null} (which are treated as empty strings)
+     * @return new option processor instance, after processing args
+     * @throws Gnopt.InvalidOption if the option processing cannot be performed completely, for any reason
+     */
+    public OptProc parse(final String... args) throws Gnopt.InvalidOption {
+        final OptProc instanceProcessor = Gnopt.instantiate(this.dispatcher);
+        parseInto(instanceProcessor, args);
+        return instanceProcessor;
+    }
+
+    /**
+     * Processes the given arguments with an existing option processor instance.
+     *
+     * @param instanceProcessor option processor instance, cannot be {@code null}
+     * @param args array of command-line arguments to analyze for options,
+     *             can be {@code null} (which is treated as an empty array), or
+     *             can have elements that are {@code null} (which are treated as empty strings)
+     * @throws Gnopt.InvalidOption if the option processing cannot be performed completely, for any reason
+     */
+    public void parseInto(final OptProc instanceProcessor, final String... args) throws Gnopt.InvalidOption {
+        Objects.requireNonNull(instanceProcessor);
+        if (Objects.nonNull(args)) {
+            new Gnopt<>(this.dispatcher, instanceProcessor, this.responseFiles, this.abbreviations, this.executor).processArgs(args);
+        }
+    }
+
+
+
+    /**
+     * Creates a new option processor instance, and processes arguments with it
+     * one at a time, as the given iterator produces them.
+     *
+     * @param args iterator of command-line arguments, cannot be {@code null};
+     *             {@code null} elements are treated as empty strings
+     * @return new option processor instance, after processing args
+     * @throws Gnopt.InvalidOption if the option processing cannot be performed completely, for any reason
+     */
+    public OptProc parse(final Iterator<String> args) throws Gnopt.InvalidOption {
+        final OptProc instanceProcessor = Gnopt.instantiate(this.dispatcher);
+        parseInto(instanceProcessor, args);
+        return instanceProcessor;
+    }
+
+    /**
+     * Processes arguments with an existing option processor instance,
+     * one at a time, as the given iterator produces them.
+     *
+     * @param instanceProcessor option processor instance, cannot be {@code null}
+     * @param args iterator of command-line arguments, cannot be {@code null};
+     *             {@code null} elements are treated as empty strings
+     * @throws Gnopt.InvalidOption if the option processing cannot be performed completely, for any reason
+     */
+    public void parseInto(final OptProc instanceProcessor, final Iterator<String> args) throws Gnopt.InvalidOption {
+        new Gnopt<>(this.dispatcher, Objects.requireNonNull(instanceProcessor), this.responseFiles, this.abbreviations, this.executor).processArgs(Objects.requireNonNull(args));
+    }
+
+    /**
+     * Creates a new option processor instance, and processes arguments with it
+     * one at a time, as the given (sequential) stream produces them.
+     *
+     * @param args stream of command-line arguments, cannot be {@code null};
+     *             {@code null} elements are treated as empty strings
+     * @return new option processor instance, after processing args
+     * @throws Gnopt.InvalidOption if the option processing cannot be performed completely, for any reason
+     */
+    public OptProc parse(final Stream<String> args) throws Gnopt.InvalidOption {
+        return parse(args.iterator());
+    }
+
+    /**
+     * Creates a new option processor instance, and processes NUL-delimited, UTF-8 encoded
+     * arguments with it, one at a time, as they are read from the given channel.
+     *
+     * @param args channel of NUL-delimited arguments, cannot be {@code null}; it is not closed
+     * @return new option processor instance, after processing args
+     * @throws Gnopt.InvalidOption if the option processing cannot be performed completely, for any reason
+     * @throws IOException if reading args fails
+     */
+    public OptProc parse(final ReadableByteChannel args) throws Gnopt.InvalidOption, IOException {
+        try {
+            return parse(new NulDelimitedArguments(args));
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Creates a new option processor instance, and processes the given arguments with it,
+     * asynchronously, using the given {@link Executor}. The returned future completes with
+     * the instance, or completes exceptionally with {@link Gnopt.InvalidOption} if the
+     * option processing fails. Cancelling the future stops the processing before the next
+     * argument (but does not interrupt the option processor method that is running, if any).
+     *
+     * @param executor executor to run the option processing, cannot be {@code null}
+     * @param args array of command-line arguments to analyze for options,
+     *             can be {@code null} (which is treated as an empty array), or
+     *             can have elements that are {@code null} (which are treated as empty strings)
+     * @return future new option processor instance, after processing args
+     */
+    public CompletableFuture<OptProc> parseAsync(final Executor executor, final String... args) {
+        Objects.requireNonNull(executor);
+        final List<String> list = Objects.isNull(args) ? List.of() : Arrays.asList(args.clone());
+        final CompletableFuture<OptProc> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(parse(new UntilDone(list.iterator(), future)));
+                } catch (final Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Processes the options in the given file into a new option processor instance,
+     * and then replaces it with a new instance whenever the file changes.
+     *
+     * @param file option file, cannot be {@code null}
+     * @return watcher of the file, which holds the current option processor instance
+     * @throws Gnopt.InvalidOption if the options in the file are invalid
+     * @throws IOException if the file cannot be read or watched
+     * @see GnoptWatcher
+     */
+    public GnoptWatcher<OptProc> watch(final Path file) throws Gnopt.InvalidOption, IOException {
+        return new GnoptWatcher<>(this, Objects.requireNonNull(file));
+    }
+
+    /**
+     * The outcome of parsing one argument vector in a batch:
+     * either the new option processor instance, or the error.
+     *
+     * @param <OptProc> class of option processor
+     */
+    public static final class Result<OptProc> {
+        private final OptProc instanceProcessor;
+        private final Gnopt.InvalidOption error;
+
+        private Result(final OptProc instanceProcessor, final Gnopt.InvalidOption error) {
+            this.instanceProcessor = instanceProcessor;
+            this.error = error;
+        }
+
+        /**
+         * @return the option processor instance, or empty if the parse failed
+         */
+        public Optional<OptProc> value() {
+            return Optional.ofNullable(this.instanceProcessor);
+        }
+
+        /**
+         * @return the error, or empty if the parse succeeded
+         */
+        public Optional<Gnopt.InvalidOption> error() {
+            return Optional.ofNullable(this.error);
+        }
+
+        /**
+         * @return the option processor instance
+         * @throws Gnopt.InvalidOption if the parse failed
+         */
+        public OptProc get() throws Gnopt.InvalidOption {
+            if (Objects.nonNull(this.error)) {
+                throw this.error;
+            }
+            return this.instanceProcessor;
+        }
+    }
+
+    /**
+     * Parses each of the given argument vectors into its own new option processor instance,
+     * in parallel, using the common {@link ForkJoinPool}.
+     *
+     * @param argvs argument vectors, cannot be {@code null}
+     * @return results, in the same order as argvs
+     */
+    public List<Result<OptProc>> parseAll(final List<String[]> argvs) {
+        final List<String[]> list = new ArrayList<>(argvs);
+        final Result<OptProc>[] results = newResults(list.size());
+        IntStream.range(0, list.size()).parallel().forEach(i -> results[i] = tryParse(list.get(i)));
+        return List.of(results);
+    }
+
+    /**
+     * Parses each of the given argument vectors into its own new option processor instance,
+     * in parallel, using the given {@link Executor}. The argument vectors are split into
+     * a few chunks per available processor, and each chunk is one task.
+     *
+     * @param argvs argument vectors, cannot be {@code null}
+     * @param executor executor to run the parsing tasks, cannot be {@code null}
+     * @return results, in the same order as argvs
+     * @throws InterruptedException if interrupted while waiting for the tasks to finish
+     */
+    public List<Result<OptProc>> parseAll(final List<String[]> argvs, final Executor executor) throws InterruptedException {
+        Objects.requireNonNull(executor);
+        final List<String[]> list = new ArrayList<>(argvs);
+        final Result<OptProc>[] results = newResults(list.size());
+
+        final int chunk = Math.max(1, list.size() / (4 * Runtime.getRuntime().availableProcessors()));
+        final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < list.size(); start += chunk) {
+            final int from = start;
+            final int to = Math.min(list.size(), start + chunk);
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int i = from; i < to; ++i) {
+                    results[i] = tryParse(list.get(i));
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).get();
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Parses each of the given argument vectors into its own new option processor instance.
+     * The returned stream is lazy; it is parallel if argvs is parallel, and
+     * (like any stream) preserves encounter order for ordered terminal operations.
+     *
+     * @param argvs argument vectors, cannot be {@code null}
+     * @return stream of results, one per argument vector
+     */
+    public Stream<Result<OptProc>> parseAll(final Stream<String[]> argvs) {
+        return argvs.map(this::tryParse);
+    }
+
+
+
+    private final GnoptDispatcher<OptProc> dispatcher;
+    private final boolean responseFiles;
+    private final boolean abbreviations;
+    private final Executor executor;
+
+    /*
+     * Stops iterating (so the processing finishes early, joining any concurrent calls)
+     * as soon as the future is done, which can only be because it was cancelled.
+     */
+    private static final class UntilDone implements Iterator<String> {
+        private final Iterator<String> args;
+        private final Future<?> future;
+
+        private UntilDone(final Iterator<String> args, final Future<?> future) {
+            this.args = args;
+            this.future = future;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.future.isDone() && this.args.hasNext();
+        }
+
+        @Override
+        public String next() {
+            return this.args.next();
+        }
+    }
+
+    /*
+     * A parser for another option processor class, with the same settings as this one.
+     */
+    <Other> GnoptParser<Other> like(final Class<Other> classProcessor) {
+        return new GnoptParser<>(Gnopt.dispatcher(Objects.requireNonNull(classProcessor)), this.responseFiles, this.abbreviations, this.executor);
+    }
+
+    boolean responseFilesAreEnabled() {
+        return this.responseFiles;
+    }
+
+    private Result<OptProc> tryParse(final String[] args) {
+        try {
+            return new Result<>(parse(args), null);
+        } catch (final Gnopt.InvalidOption e) {
+            return new Result<>(null, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <OptProc> Result<OptProc>[] newResults(final int size) {
+        return (Result<OptProc>[])new Result<?>[size];
+    }
+
+    private GnoptParser(final GnoptDispatcher<OptProc> dispatcher, final boolean responseFiles, final boolean abbreviations, final Executor executor) {
+        this.dispatcher = Objects.requireNonNull(dispatcher);
+        this.responseFiles = responseFiles;
+        this.abbreviations = abbreviations;
+        this.executor = executor;
+    }
+}
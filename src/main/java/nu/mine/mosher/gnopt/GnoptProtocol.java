@@ -0,0 +1,91 @@
+package nu.mine.mosher.gnopt;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * The wire protocol between {@link GnoptClient} and {@link GnoptServer}.
+ * It depends on nothing else in Gnopt, so that the client loads only this.
+ *
+ * A request is the magic number, the version, the number of arguments,
+ * and then each argument, as its length and its UTF-8 bytes. The response is
+ * a sequence of frames, each a type byte: {@code O} (standard output) or
+ * {@code E} (standard error) followed by a length and that many bytes,
+ * or {@code X} (exit) followed by the exit status, which ends the response.
+ */
+final class GnoptProtocol {
+    static final int MAGIC = 0x474E4F53; // "GNOS"
+    static final short VERSION = 1;
+    static final byte FRAME_OUT = 'O';
+    static final byte FRAME_ERR = 'E';
+    static final byte FRAME_EXIT = 'X';
+
+    private static final Class<?> UNIX_ADDRESS = unixAddressClass();
+
+    private GnoptProtocol() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    static boolean isUnixDomainSocketSupported() {
+        return Objects.nonNull(UNIX_ADDRESS);
+    }
+
+    static SocketAddress unixDomainSocketAddress(final Path socket) {
+        Objects.requireNonNull(socket);
+        if (!isUnixDomainSocketSupported()) {
+            throw new UnsupportedOperationException("Unix domain sockets require Java 16 or later");
+        }
+        try {
+            return (SocketAddress)UNIX_ADDRESS.getMethod("of", Path.class).invoke(null, socket);
+        } catch (final InvocationTargetException e) {
+            throw new IllegalArgumentException(e.getCause());
+        } catch (final ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+
+    /*
+     * Opens a channel of the given type (ServerSocketChannel or SocketChannel) for the protocol family of the address;
+     * the open method that takes a ProtocolFamily (needed for Unix domain sockets) is only on Java 15 or later.
+     */
+    static <C> C open(final Class<C> type, final SocketAddress address) throws IOException {
+        try {
+            if (address instanceof InetSocketAddress) {
+                return type.cast(type.getMethod("open").invoke(null));
+            }
+            final ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            return type.cast(type.getMethod("open", ProtocolFamily.class).invoke(null, unix));
+        } catch (final InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (final ReflectiveOperationException | IllegalArgumentException e) {
+            throw new UnsupportedOperationException("unsupported address: " + address, e);
+        }
+    }
+
+    static void writeRequest(final DataOutputStream out, final String... args) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(args.length);
+        for (final String arg : args) {
+            final byte[] bytes = Objects.toString(arg, "").getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.flush();
+    }
+
+    private static Class<?> unixAddressClass() {
+        try {
+            return Class.forName("java.net.UnixDomainSocketAddress");
+        } catch (final ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
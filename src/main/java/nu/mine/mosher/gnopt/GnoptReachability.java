@@ -0,0 +1,201 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import org.slf4j.*;
+
+import java.io.IOException;
+import java.lang.reflect.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Generates GraalVM native-image reachability metadata ({@code reflect-config.json})
+ * for option processor classes. The metadata registers exactly what Gnopt accesses
+ * reflectively: the public no-argument constructor, the public methods (for
+ * {@link Class#getMethods()}), every method that {@link GnoptCompiler} accepts,
+ * every field marked with {@link GnoptOption} (for writing),
+ * the {@link GnoptCompiler#STATIC_MAPPING_FIELD_NAME} field (if any), the
+ * generated {@link GnoptDispatcher} (if any), the {@code values()} method of every enum
+ * that an option takes, and {@link Optional#orElse(Object)} (which every compiled option uses).
+ * The library's own converters are registered by the metadata in Gnopt's jar file
+ * ({@code META-INF/native-image/nu.mine.mosher.gnopt/gnopt}), which native-image finds by itself.
+ *
+ * Run it at build time, for example:
+ * {@code java -cp ... nu.mine.mosher.gnopt.GnoptReachability --output=build/resources/main/META-INF/native-image/my.group/my-app demo.FoobarOpts}
+ */
+public final class GnoptReachability {
+    /**
+     * Name of the metadata file written by {@link GnoptReachability#main(String...)}.
+     */
+    public static final String FILE_NAME = "reflect-config.json";
+
+    /**
+     * Writes {@link GnoptReachability#FILE_NAME} for the option processor classes named on the command line.
+     *
+     * @param args {@code --output=directory} followed by fully qualified option processor class names
+     *             (the options are parsed here directly, not by {@link Gnopt})
+     * @throws Throwable if an option is invalid, or any class cannot be loaded or compiled, or the file cannot be written
+     */
+    public static void main(final String... args) throws Throwable {
+        final Opts opts = Opts.parse(args);
+        final List<Class<?>> classes = new ArrayList<>();
+        for (final String name : opts.classes) {
+            classes.add(Class.forName(name, false, Thread.currentThread().getContextClassLoader()));
+        }
+        write(opts.output, classes);
+    }
+
+    /**
+     * Writes {@link GnoptReachability#FILE_NAME} into the given directory.
+     *
+     * @param directory directory to write into (created if necessary)
+     * @param classes option processor classes
+     * @return path of the file written
+     * @throws IOException if the file cannot be written
+     */
+    public static Path write(final Path directory, final Collection<Class<?>> classes) throws IOException {
+        final Path file = Files.createDirectories(directory).resolve(FILE_NAME);
+        Files.writeString(file, reflectConfig(classes));
+        LOG.info("Wrote native-image metadata for {} option processor class(es) to {}", classes.size(), file);
+        return file;
+    }
+
+    /**
+     * Generates the contents of {@code reflect-config.json} for the given option processor classes.
+     *
+     * @param classes option processor classes, each of which must compile successfully
+     * @return JSON reflection configuration
+     * @throws GnoptCompiler.InvalidOptionProcessorException if any class is invalid
+     */
+    public static String reflectConfig(final Collection<Class<?>> classes) {
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+        for (final Class<?> classProcessor : classes) {
+            final GnoptCompiler compiler = GnoptCompiler.compile(classProcessor);
+
+            final Entry entry = entries.computeIfAbsent(classProcessor.getName(), Entry::new);
+            entry.methods.add(CONSTRUCTOR);
+            if (hasMapping(classProcessor)) {
+                entry.fields.add(GnoptCompiler.STATIC_MAPPING_FIELD_NAME);
+            }
+            for (final Method method : compiler.processors().values()) {
+                entries.computeIfAbsent(method.getDeclaringClass().getName(), Entry::new).methods.add(signature(method));
+                for (final Class<?> type : method.getParameterTypes()) {
+                    addEnum(entries, type);
+                }
+            }
+            for (final Field field : compiler.fields().values()) {
+                entries.computeIfAbsent(field.getDeclaringClass().getName(), Entry::new).writableFields.add(field.getName());
+                addEnum(entries, field.getType());
+            }
+            entries.computeIfAbsent(Optional.class.getName(), Entry::new).methods.add(OPTIONAL_OR_ELSE);
+
+            final String nameDispatcher = GnoptDispatchers.nameOf(classProcessor);
+            try {
+                Class.forName(nameDispatcher, false, classProcessor.getClassLoader());
+                entries.computeIfAbsent(nameDispatcher, Entry::new).methods.add(CONSTRUCTOR);
+            } catch (final ClassNotFoundException notGenerated) {
+                LOG.trace("No generated dispatcher found for {}", classProcessor);
+            }
+        }
+
+        final StringJoiner json = new StringJoiner(",\n", "[\n", "\n]\n");
+        entries.values().forEach(e -> json.add(e.toJson()));
+        return json.toString();
+    }
+
+
+
+    private static final Logger LOG = LoggerFactory.getLogger(GnoptReachability.class);
+    private static final String CONSTRUCTOR = "{\"name\": \"<init>\", \"parameterTypes\": []}";
+    private static final String ENUM_VALUES = "{\"name\": \"values\", \"parameterTypes\": []}";
+    private static final String OPTIONAL_OR_ELSE = "{\"name\": \"orElse\", \"parameterTypes\": [\"java.lang.Object\"]}";
+
+    private static class Entry {
+        private final String name;
+        private final Set<String> fields = new LinkedHashSet<>();
+        private final Set<String> writableFields = new LinkedHashSet<>();
+        private final Set<String> methods = new LinkedHashSet<>();
+
+        private Entry(final String name) {
+            this.name = name;
+        }
+
+        private String toJson() {
+            final StringJoiner f = new StringJoiner(", ", "[", "]");
+            this.fields.forEach(s -> f.add("{\"name\": " + quote(s) + "}"));
+            this.writableFields.forEach(s -> f.add("{\"name\": " + quote(s) + ", \"allowWrite\": true}"));
+            final StringJoiner m = new StringJoiner(",\n      ", "[\n      ", "\n    ]");
+            this.methods.forEach(m::add);
+            return
+                "  {\n" +
+                "    \"name\": " + quote(this.name) + ",\n" +
+                "    \"queryAllPublicMethods\": true,\n" +
+                "    \"fields\": " + f + ",\n" +
+                "    \"methods\": " + (this.methods.isEmpty() ? "[]" : m.toString()) + "\n" +
+                "  }";
+        }
+    }
+
+    private GnoptReachability() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    /*
+     * The tool's own options: --output=directory, then class names (all of
+     * the arguments after --, if any, are class names).
+     */
+    private static final class Opts {
+        private static final String OUTPUT = Gnopt.OPT_PREFIX + "output";
+
+        private Path output = Paths.get(".");
+        private final List<String> classes = new ArrayList<>();
+
+        private static Opts parse(final String... args) {
+            final Opts opts = new Opts();
+            boolean options = true;
+            for (final String arg : args) {
+                if (options && arg.equals(Gnopt.OPT_PREFIX)) {
+                    options = false;
+                } else if (options && arg.equals(OUTPUT)) {
+                    opts.output = Paths.get(".");
+                } else if (options && arg.startsWith(OUTPUT + "=")) {
+                    opts.output = Paths.get(arg.substring(OUTPUT.length() + 1));
+                } else if (options && arg.startsWith(Gnopt.OPT_PREFIX)) {
+                    throw new IllegalArgumentException("invalid option: " + arg);
+                } else {
+                    opts.classes.add(arg);
+                }
+            }
+            return opts;
+        }
+    }
+
+    private static boolean hasMapping(final Class<?> classProcessor) {
+        try {
+            return Modifier.isStatic(classProcessor.getField(GnoptCompiler.STATIC_MAPPING_FIELD_NAME).getModifiers());
+        } catch (final NoSuchFieldException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Class.getEnumConstants (used to build an enum's converter) calls values() reflectively.
+     */
+    private static void addEnum(final Map<String, Entry> entries, final Class<?> type) {
+        if (type.isEnum()) {
+            entries.computeIfAbsent(type.getName(), Entry::new).methods.add(ENUM_VALUES);
+        }
+    }
+
+    private static String signature(final Method method) {
+        final StringJoiner params = new StringJoiner(", ", "[", "]");
+        for (final Class<?> p : method.getParameterTypes()) {
+            params.add(quote(p.getTypeName()));
+        }
+        return "{\"name\": " + quote(method.getName()) + ", \"parameterTypes\": " + params + "}";
+    }
+
+    private static String quote(final String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
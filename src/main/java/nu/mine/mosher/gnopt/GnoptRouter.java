@@ -0,0 +1,235 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import org.slf4j.*;
+
+import java.util.*;
+
+/**
+ * Routes a git-style command line, {@code tool [global options] command [command options and arguments]},
+ * to a root option processor (for the global options) and one subcommand option processor
+ * (for everything after the command name).
+ * Build it once, with {@link GnoptRouter#of(GnoptParser)}, register each command, and then call
+ * {@link GnoptRouter#route(String...)} as many times as needed:
+ *
+ * <pre>{@code
+ * GnoptRouter<GitOpts> router = GnoptRouter.of(GitOpts.class)
+ *     .withCommand("commit", "demo.CommitOpts")
+ *     .withCommand("log", LogOpts.class);
+ * GnoptRouter.Route<GitOpts> route = router.route(args);
+ * }</pre>
+ *
+ * The global options are processed by the root option processor, up to the first
+ * non-option argument (which would otherwise go to its {@code __} method); that
+ * argument names the command. Only then is the command's option processor class
+ * loaded (if it was registered by name), compiled (or its generated {@link GnoptDispatcher}
+ * found), and given the rest of the arguments, so the time to route a command line does not
+ * depend on how many commands are registered. Each command is compiled at most once.
+ *
+ * A router is immutable, and can be shared across threads. The command option processors
+ * are parsed with the same settings (such as response files and abbreviations) as the root.
+ *
+ * @param <Root> class of root option processor
+ */
+public final class GnoptRouter<Root> {
+    /**
+     * Builds a router, with no commands, for the given root option processor class.
+     * The class is compiled (or its generated {@link GnoptDispatcher} is found) immediately.
+     *
+     * @param classRoot {@link Class} of root option processor, cannot be {@code null}
+     * @param <Root> class of classRoot
+     * @return new router
+     * @throws GnoptCompiler.InvalidOptionProcessorException if the classRoot is invalid
+     */
+    public static <Root> GnoptRouter<Root> of(final Class<Root> classRoot) {
+        return of(GnoptParser.of(classRoot));
+    }
+
+    /**
+     * Builds a router, with no commands, that processes the global options with the given parser.
+     * Its settings also apply to the commands.
+     *
+     * @param parserRoot parser for the root option processor, cannot be {@code null}
+     * @param <Root> class of root option processor
+     * @return new router
+     */
+    public static <Root> GnoptRouter<Root> of(final GnoptParser<Root> parserRoot) {
+        return new GnoptRouter<>(Objects.requireNonNull(parserRoot), Map.of());
+    }
+
+    /**
+     * Returns a router like this one, but with the given command added (or replaced).
+     * The class is not loaded until the command is first routed to, so registering
+     * a command costs nothing else.
+     *
+     * @param name name of the command (exactly as given on the command line), cannot be {@code null}
+     * @param className fully qualified name of the command's option processor class, cannot be {@code null};
+     *                  it is loaded by the class loader of the root option processor class
+     * @return router with the given command
+     */
+    public GnoptRouter<Root> withCommand(final String name, final String className) {
+        return withCommand(name, new Command(Objects.requireNonNull(className), null));
+    }
+
+    /**
+     * Returns a router like this one, but with the given command added (or replaced).
+     * The class is not compiled until the command is first routed to.
+     *
+     * @param name name of the command (exactly as given on the command line), cannot be {@code null}
+     * @param classCommand {@link Class} of the command's option processor, cannot be {@code null}
+     * @return router with the given command
+     */
+    public GnoptRouter<Root> withCommand(final String name, final Class<?> classCommand) {
+        return withCommand(name, new Command(classCommand.getName(), classCommand));
+    }
+
+    /**
+     * The outcome of routing one command line: the root option processor instance,
+     * and (unless there was no command) the name of the command and its option processor instance.
+     *
+     * @param <Root> class of root option processor
+     */
+    public static final class Route<Root> {
+        private final Root root;
+        private final String command;
+        private final Object instanceCommand;
+
+        private Route(final Root root, final String command, final Object instanceCommand) {
+            this.root = root;
+            this.command = command;
+            this.instanceCommand = instanceCommand;
+        }
+
+        /**
+         * @return the root option processor instance, after processing the global options
+         */
+        public Root root() {
+            return this.root;
+        }
+
+        /**
+         * @return the name of the command, or empty if the command line had none
+         */
+        public Optional<String> command() {
+            return Optional.ofNullable(this.command);
+        }
+
+        /**
+         * @return the command's option processor instance, after processing the rest
+         *      of the command line, or empty if the command line had no command
+         */
+        public Optional<Object> instance() {
+            return Optional.ofNullable(this.instanceCommand);
+        }
+    }
+
+    /**
+     * Creates a new root option processor instance, and processes the global options with it;
+     * then creates a new instance of the named command's option processor, and processes
+     * the rest of the arguments with it.
+     *
+     * @param args array of command-line arguments,
+     *             can be {@code null} (which is treated as an empty array), or
+     *             can have elements that are {@code null} (which are treated as empty strings)
+     * @return the route taken, with the new option processor instances
+     * @throws Gnopt.InvalidOption if the command is unknown, or its class cannot be loaded,
+     *      or the option processing cannot be performed completely, for any reason
+     * @throws GnoptCompiler.InvalidOptionProcessorException if the command's option processor class is invalid
+     */
+    public Route<Root> route(final String... args) throws Gnopt.InvalidOption {
+        final List<String> list = Objects.isNull(args) ? List.of() : Arrays.asList(args);
+        final int at = commandIndex(list);
+
+        final Root root = this.parserRoot.parse(list.subList(0, Math.min(at, list.size())).iterator());
+        if (list.size() <= at) {
+            return new Route<>(root, null, null);
+        }
+
+        final String name = Objects.toString(list.get(at), "");
+        final Command command = this.commands.get(name);
+        if (Objects.isNull(command)) {
+            throw Gnopt.invalid(name, "invalid command");
+        }
+        return new Route<>(root, name, command.parser(this.parserRoot, root.getClass().getClassLoader()).parse(list.subList(at + 1, list.size()).iterator()));
+    }
+
+
+
+    private static final Logger LOG = LoggerFactory.getLogger(GnoptRouter.class);
+
+    private final GnoptParser<Root> parserRoot;
+    private final Map<String, Command> commands;
+
+    /*
+     * A registered command, whose option processor class is loaded and compiled
+     * (and its parser built) only when it is first routed to. Commands are shared by
+     * all the routers derived from the one where they were registered.
+     */
+    private static final class Command {
+        private final String className;
+        private final Class<?> classCommand;
+        private volatile GnoptParser<?> parser;
+
+        private Command(final String className, final Class<?> classCommand) {
+            this.className = className;
+            this.classCommand = classCommand;
+        }
+
+        private GnoptParser<?> parser(final GnoptParser<?> parserRoot, final ClassLoader loader) throws Gnopt.InvalidOption {
+            GnoptParser<?> p = this.parser;
+            if (Objects.isNull(p)) {
+                synchronized (this) {
+                    p = this.parser;
+                    if (Objects.isNull(p)) {
+                        LOG.trace("====> Loading command option-processor {}", this.className);
+                        this.parser = p = parserRoot.like(load(loader));
+                    }
+                }
+            }
+            return p;
+        }
+
+        private Class<?> load(final ClassLoader loader) throws Gnopt.InvalidOption {
+            if (Objects.nonNull(this.classCommand)) {
+                return this.classCommand;
+            }
+            try {
+                return Class.forName(this.className, true, Objects.requireNonNullElseGet(loader, ClassLoader::getSystemClassLoader));
+            } catch (final ClassNotFoundException | LinkageError e) {
+                final Gnopt.InvalidOption invalid = Gnopt.invalid(this.className, "cannot load command class");
+                invalid.initCause(e);
+                throw invalid;
+            }
+        }
+    }
+
+    private GnoptRouter(final GnoptParser<Root> parserRoot, final Map<String, Command> commands) {
+        this.parserRoot = parserRoot;
+        this.commands = commands;
+    }
+
+    private GnoptRouter<Root> withCommand(final String name, final Command command) {
+        final Map<String, Command> commands = new HashMap<>(this.commands);
+        commands.put(Objects.requireNonNull(name), command);
+        return new GnoptRouter<>(this.parserRoot, Collections.unmodifiableMap(commands));
+    }
+
+    /*
+     * Index of the argument that names the command (the first non-option argument,
+     * as Gnopt would see it), or the size of the list if there is none.
+     */
+    private int commandIndex(final List<String> args) {
+        final boolean responseFiles = this.parserRoot.responseFilesAreEnabled();
+        for (int i = 0; i < args.size(); ++i) {
+            final String arg = Objects.toString(args.get(i), "");
+            if (arg.equals(Gnopt.OPT_PREFIX)) {
+                return i + 1;
+            }
+            final boolean responseFile = responseFiles && 1 < arg.length() && arg.charAt(0) == Gnopt.RESPONSE_FILE_PREFIX;
+            if (!responseFile && !arg.startsWith(Gnopt.OPT_PREFIX)) {
+                return i;
+            }
+        }
+        return args.size();
+    }
+}
@@ -0,0 +1,392 @@
+package nu.mine.mosher.gnopt;
+
+import org.slf4j.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A resident command server, which keeps a JVM running, with its option processor
+ * classes already compiled and warm, and runs a {@link Program} for each command line
+ * that a client (see {@link GnoptClient}) sends it. The standard output and standard error
+ * of each run are streamed back to the client as they are written, followed by the exit status.
+ *
+ * The server listens on a Unix domain socket (on Java 16 or later), or on any other
+ * {@link SocketAddress} (such as a loopback TCP port). Each connection is one session,
+ * handled in its own virtual thread (on Java 21 or later) or daemon platform thread,
+ * so many clients can be served concurrently. Sessions are isolated from each other:
+ * each has its own option processor instance, its own output streams, and its own exit
+ * status, and a failure in one session does not affect any other. For that isolation
+ * to hold, the program must write only to the given streams (not to {@link System#out}),
+ * and must not call {@link System#exit(int)}, or keep per-run state in static fields.
+ *
+ * <pre>{@code
+ * GnoptServer server = GnoptServer.start(Paths.get("/run/user/1000/foobar.sock"),
+ *     GnoptServer.program(GnoptParser.of(FoobarOpts.class), (opts, out, err) -> {
+ *         out.println("something: " + opts.something());
+ *         return 0;
+ *     }));
+ * }</pre>
+ */
+public final class GnoptServer implements Closeable {
+    /**
+     * Exit status of a run that fails because of an invalid option.
+     */
+    public static final int EXIT_INVALID_OPTION = 2;
+
+    /**
+     * Exit status of a run that fails because the program throws an exception.
+     */
+    public static final int EXIT_FAILURE = 1;
+
+    /**
+     * Maximum number of command-line arguments in one request.
+     */
+    public static final int MAX_ARGS = 8192;
+
+    /**
+     * Maximum size of one request (the UTF-8 encoded command-line arguments, and their lengths), in bytes.
+     */
+    public static final int MAX_REQUEST_BYTES = 2 << 20;
+
+    /**
+     * Time allowed for a client to send its whole request, after connecting;
+     * a client that is slower than this is disconnected.
+     */
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * A program that the server runs for each command line it receives.
+     */
+    @FunctionalInterface
+    public interface Program {
+        /**
+         * Runs the program for one command line.
+         *
+         * @param args command-line arguments sent by the client
+         * @param out standard output of the session (streamed to the client)
+         * @param err standard error of the session (streamed to the client)
+         * @return exit status
+         * @throws Gnopt.InvalidOption if an option is invalid (the exit status is then {@link GnoptServer#EXIT_INVALID_OPTION})
+         * @throws Exception if the program fails (the exit status is then {@link GnoptServer#EXIT_FAILURE})
+         */
+        int run(String[] args, PrintStream out, PrintStream err) throws Exception;
+    }
+
+    /**
+     * A command that the server runs, with a new, processed option processor instance, for each command line.
+     *
+     * @param <OptProc> class of option processor
+     */
+    @FunctionalInterface
+    public interface Command<OptProc> {
+        /**
+         * Runs the command for one command line.
+         *
+         * @param instanceProcessor new option processor instance, after processing the command-line arguments
+         * @param out standard output of the session (streamed to the client)
+         * @param err standard error of the session (streamed to the client)
+         * @return exit status
+         * @throws Exception if the command fails (the exit status is then {@link GnoptServer#EXIT_FAILURE})
+         */
+        int run(OptProc instanceProcessor, PrintStream out, PrintStream err) throws Exception;
+    }
+
+    /**
+     * Makes a program that parses each command line with the given parser
+     * (into a new option processor instance), and then runs the given command.
+     *
+     * @param parser parser for the option processor class, cannot be {@code null}
+     * @param command command to run, cannot be {@code null}
+     * @param <OptProc> class of option processor
+     * @return new program
+     */
+    public static <OptProc> Program program(final GnoptParser<OptProc> parser, final Command<OptProc> command) {
+        Objects.requireNonNull(parser);
+        Objects.requireNonNull(command);
+        return (args, out, err) -> command.run(parser.parse(args), out, err);
+    }
+
+    /**
+     * Starts a server listening on the given Unix domain socket. If a socket file
+     * already exists there, but no server is listening on it, it is replaced.
+     * The socket file is accessible only to its owner from the moment it appears
+     * (it is bound in a new, private directory, and then moved into place),
+     * and is deleted when the server is closed.
+     *
+     * @param socket path of the socket file, cannot be {@code null}
+     * @param program program to run for each command line, cannot be {@code null}
+     * @return the running server
+     * @throws IOException if the socket cannot be bound, or another server is listening on it,
+     *      or the file system cannot restrict access to it (because it does not support POSIX permissions)
+     * @throws UnsupportedOperationException if Unix domain sockets are not supported (before Java 16)
+     */
+    public static GnoptServer start(final Path socket, final Program program) throws IOException {
+        Objects.requireNonNull(program);
+        final SocketAddress address = unixDomainSocketAddress(socket);
+        if (Files.exists(socket)) {
+            try (final SocketChannel live = GnoptProtocol.open(SocketChannel.class, address)) {
+                live.connect(address);
+                throw new BindException("another server is listening on " + socket);
+            } catch (final ConnectException stale) {
+                LOG.info("Replacing stale socket file {}", socket);
+                Files.delete(socket);
+            }
+        }
+
+        final Path dir;
+        try {
+            dir = Files.createTempDirectory(socket.toAbsolutePath().getParent(), ".gnopt-", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (final UnsupportedOperationException notPosix) {
+            throw new IOException("cannot restrict access to socket file " + socket, notPosix);
+        }
+        final Path bound = dir.resolve("socket");
+        final ServerSocketChannel channel = GnoptProtocol.open(ServerSocketChannel.class, address);
+        try {
+            channel.bind(unixDomainSocketAddress(bound));
+            Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+            Files.move(bound, socket, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(bound);
+            throw e;
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+        return start(channel, address, socket, program);
+    }
+
+    /**
+     * Starts a server listening on the given address (for example, a loopback TCP port,
+     * which, unlike a Unix domain socket, any local user can connect to).
+     *
+     * @param address address to bind to, cannot be {@code null}
+     * @param program program to run for each command line, cannot be {@code null}
+     * @return the running server
+     * @throws IOException if the address cannot be bound
+     */
+    public static GnoptServer start(final SocketAddress address, final Program program) throws IOException {
+        Objects.requireNonNull(program);
+        final ServerSocketChannel channel = GnoptProtocol.open(ServerSocketChannel.class, Objects.requireNonNull(address));
+        try {
+            channel.bind(address);
+            return start(channel, channel.getLocalAddress(), null, program);
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return {@code true} if Unix domain sockets are supported (on Java 16 or later)
+     */
+    public static boolean isUnixDomainSocketSupported() {
+        return GnoptProtocol.isUnixDomainSocketSupported();
+    }
+
+    /**
+     * Makes the address of a Unix domain socket.
+     *
+     * @param socket path of the socket file, cannot be {@code null}
+     * @return {@code java.net.UnixDomainSocketAddress} for the path
+     * @throws UnsupportedOperationException if Unix domain sockets are not supported (before Java 16)
+     */
+    public static SocketAddress unixDomainSocketAddress(final Path socket) {
+        return GnoptProtocol.unixDomainSocketAddress(socket);
+    }
+
+    /**
+     * @return the address the server is listening on (for example, with the actual port, if port 0 was requested)
+     */
+    public SocketAddress address() {
+        return this.address;
+    }
+
+    /**
+     * Stops accepting connections (and deletes the socket file, if any).
+     * Sessions already started run to completion.
+     *
+     * @throws IOException if the socket cannot be closed, or its file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        this.deadlines.shutdownNow();
+        this.server.close();
+        if (Objects.nonNull(this.socket)) {
+            Files.deleteIfExists(this.socket);
+        }
+    }
+
+
+
+    private static final Logger LOG = LoggerFactory.getLogger(GnoptServer.class);
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final Path socket;
+    private final Program program;
+    private final Executor sessions = Gnopt.threadPerTaskExecutor("gnopt-session");
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(task -> {
+        final Thread thread = new Thread(task, "gnopt-server-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Time allowed to read each request; only changed by tests.
+     */
+    volatile Duration requestTimeout = REQUEST_TIMEOUT;
+
+    private GnoptServer(final ServerSocketChannel server, final SocketAddress address, final Path socket, final Program program) {
+        this.server = server;
+        this.address = address;
+        this.socket = socket;
+        this.program = program;
+    }
+
+    /*
+     * Starts accepting connections on the bound (and, for a Unix domain socket, already restricted) channel.
+     */
+    private static GnoptServer start(final ServerSocketChannel channel, final SocketAddress address, final Path socket, final Program program) {
+        final GnoptServer server = new GnoptServer(channel, address, socket, program);
+        final Thread acceptor = new Thread(server::accept, "gnopt-server");
+        acceptor.start();
+        LOG.info("Listening on {}", server.address);
+        return server;
+    }
+
+    private void accept() {
+        while (this.server.isOpen()) {
+            final SocketChannel client;
+            try {
+                client = this.server.accept();
+            } catch (final ClosedChannelException closed) {
+                break;
+            } catch (final IOException e) {
+                LOG.warn("Cannot accept connection on {}", this.address, e);
+                continue;
+            }
+            this.sessions.execute(() -> session(client));
+        }
+        LOG.info("Stopped listening on {}", this.address);
+    }
+
+    /*
+     * One connection: read the command line, run the program, and send back its output and exit status.
+     * The channel is closed (which fails the read) if the request has not all arrived by its deadline.
+     */
+    private void session(final SocketChannel client) {
+        try (client) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+            final String[] args;
+            final ScheduledFuture<?> deadline;
+            try {
+                deadline = this.deadlines.schedule(() -> closeQuietly(client), this.requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException closed) {
+                LOG.debug("Server closed; dropping session");
+                return;
+            }
+            try {
+                args = readRequest(in);
+            } catch (final ClosedChannelException timedOut) {
+                LOG.warn("Session timed out waiting for its request");
+                return;
+            } finally {
+                deadline.cancel(false);
+            }
+            final DataOutputStream sink = new DataOutputStream(Channels.newOutputStream(client));
+            final PrintStream out = frames(sink, GnoptProtocol.FRAME_OUT);
+            final PrintStream err = frames(sink, GnoptProtocol.FRAME_ERR);
+            final int status = run(args, out, err);
+            out.flush();
+            err.flush();
+            synchronized (sink) {
+                sink.writeByte(GnoptProtocol.FRAME_EXIT);
+                sink.writeInt(status);
+                sink.flush();
+            }
+        } catch (final IOException e) {
+            LOG.warn("Session failed", e);
+        }
+    }
+
+    private int run(final String[] args, final PrintStream out, final PrintStream err) {
+        try {
+            return this.program.run(args, out, err);
+        } catch (final Gnopt.InvalidOption e) {
+            err.println(e.getMessage());
+            return EXIT_INVALID_OPTION;
+        } catch (final Exception e) {
+            LOG.warn("Program failed", e);
+            err.println(e);
+            return EXIT_FAILURE;
+        }
+    }
+
+    private static void closeQuietly(final SocketChannel client) {
+        try {
+            client.close();
+        } catch (final IOException e) {
+            LOG.trace("cannot close connection", e);
+        }
+    }
+
+    /*
+     * Nothing is allocated in advance based on the (untrusted) sizes in the request:
+     * the arguments, and the bytes of each, are stored only as they actually arrive.
+     */
+    private static String[] readRequest(final DataInputStream in) throws IOException {
+        if (in.readInt() != GnoptProtocol.MAGIC || in.readShort() != GnoptProtocol.VERSION) {
+            throw new IOException("not a version " + GnoptProtocol.VERSION + " request");
+        }
+        final int count = in.readInt();
+        if (count < 0 || MAX_ARGS < count) {
+            throw new IOException("too many arguments: " + count);
+        }
+        final List<String> args = new ArrayList<>();
+        int total = 0;
+        for (int i = 0; i < count; ++i) {
+            final int length = in.readInt();
+            if (length < 0 || MAX_REQUEST_BYTES - total - 4 < length) {
+                throw new IOException("request is too long");
+            }
+            total += 4 + length;
+            final byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException();
+            }
+            args.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return args.toArray(new String[0]);
+    }
+
+    /*
+     * A stream that sends what is written to it as frames of the given type, flushed at each line
+     * (and whenever its buffer fills), so the client sees the output as it is written.
+     */
+    private static PrintStream frames(final DataOutputStream sink, final byte type) {
+        final OutputStream frames = new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                write(new byte[] { (byte)b }, 0, 1);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                synchronized (sink) {
+                    sink.writeByte(type);
+                    sink.writeInt(len);
+                    sink.write(b, off, len);
+                    sink.flush();
+                }
+            }
+        };
+        return new PrintStream(new BufferedOutputStream(frames), true, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,196 @@
+package nu.mine.mosher.gnopt;
+
+import org.slf4j.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps an option processor instance up to date with an option file,
+ * which is re-read whenever it changes (as reported by a {@link WatchService}).
+ * Build it with {@link GnoptParser#watch(Path)}.
+ *
+ * The file has the same format as a response file (see {@link GnoptParser#withResponseFiles(boolean)}),
+ * and contains only options (for example, {@code --name=value}). If an option occurs more than
+ * once, the last occurrence wins. A reload does nothing unless some option's value has changed;
+ * if any has, all the options (not only the changed ones) are parsed, once each, using the parser's
+ * compiled option processor, into a new instance, which then replaces the current one atomically.
+ * If any option is invalid, the current instance is kept (and the error is logged). Removing an
+ * option from the file leaves its last value in place.
+ *
+ * Reloading is not incremental: the whole file is read again, and every option's handler runs again
+ * (on the new instance), so the cost of a reload grows with the number of options in the file, not
+ * with the number that changed. This is deliberate: option processors cannot be copied, so
+ * applying only the changes would mean changing the published instance in place, and readers could
+ * then see a partly applied reload.
+ *
+ * Instances are never changed once published, so readers get a consistent view of all
+ * the settings by calling {@link GnoptWatcher#instance()} once, and reading from that instance.
+ * The values from the file are also published as an immutable {@link GnoptWatcher#snapshot()},
+ * which is replaced along with the instance.
+ *
+ * @param <OptProc> class of option processor
+ */
+public final class GnoptWatcher<OptProc> implements Closeable {
+    /**
+     * Gets the current option processor instance.
+     * @return option processor instance (a new instance after each reload that changes anything)
+     */
+    public OptProc instance() {
+        return this.instanceProcessor.get();
+    }
+
+    /**
+     * Gets the options most recently applied from the file.
+     * @return unmodifiable {@link Map} of option name (with any hyphen-minus characters
+     *      changed to underscores) to its value
+     */
+    public Map<String, Optional<String>> snapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Re-reads the file now, and applies any changes. This is called automatically
+     * when the file changes, but can also be called directly.
+     *
+     * @return unmodifiable {@link Set} of names of the options whose values changed
+     * @throws Gnopt.InvalidOption if any changed option is invalid (in which case nothing is applied)
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized Set<String> reload() throws Gnopt.InvalidOption, IOException {
+        final Map<String, String> next = read(this.file);
+
+        final Set<String> names = new LinkedHashSet<>();
+        next.forEach((name, arg) -> {
+            if (!arg.equals(this.applied.get(name))) {
+                names.add(name);
+            }
+        });
+        if (names.isEmpty() && Objects.nonNull(this.instanceProcessor.get())) {
+            return Set.of();
+        }
+
+        final Map<String, String> applied = new LinkedHashMap<>(this.applied);
+        applied.putAll(next);
+        final OptProc instance = this.parser.parse(applied.values().toArray(new String[0]));
+
+        this.applied = applied;
+        this.instanceProcessor.set(instance);
+        this.snapshot = snapshotOf(applied);
+        LOG.trace("reloaded {}, options changed: {}", this.file, names);
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Stops watching the file. The current instance keeps its settings.
+     * @throws IOException if the underlying {@link WatchService} cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.watchService.close();
+    }
+
+
+
+    private static final Logger LOG = LoggerFactory.getLogger(GnoptWatcher.class);
+
+    private final GnoptParser<OptProc> parser;
+    private final Path file;
+    private final AtomicReference<OptProc> instanceProcessor = new AtomicReference<>();
+    private final WatchService watchService;
+
+    /**
+     * Name of each option to its whole argument (for example, "name" to "--name=value"),
+     * as last applied to the current instance. Guarded by this.
+     */
+    private Map<String, String> applied = Map.of();
+    private volatile Map<String, Optional<String>> snapshot = Map.of();
+
+    GnoptWatcher(final GnoptParser<OptProc> parser, final Path file) throws Gnopt.InvalidOption, IOException {
+        this.parser = Objects.requireNonNull(parser);
+        this.file = file.toAbsolutePath().normalize();
+
+        // start watching before the first read, so no change can be missed in between
+        this.watchService = this.file.getFileSystem().newWatchService();
+        try {
+            this.file.getParent().register(this.watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            reload();
+        } catch (final Gnopt.InvalidOption | IOException | RuntimeException e) {
+            this.watchService.close();
+            throw e;
+        }
+
+        final Thread thread = new Thread(this::watch, "gnopt-watcher-" + this.file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+     * Editors often replace the file (by renaming a new one over it) rather than
+     * modifying it, so creation counts as a change too. All the events that are
+     * pending at once are coalesced into one reload.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                final WatchKey key = this.watchService.take();
+                boolean changed = false;
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || this.file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    tryReload();
+                }
+            }
+        } catch (final ClosedWatchServiceException | InterruptedException stop) {
+            LOG.trace("stopped watching {}", this.file);
+        }
+    }
+
+    private void tryReload() {
+        try {
+            reload();
+        } catch (final Gnopt.InvalidOption | IOException e) {
+            LOG.error("Cannot reload option file {}; keeping previous settings", this.file, e);
+        }
+    }
+
+    /*
+     * One pass over the (memory-mapped) file, keeping only the last occurrence of each option.
+     */
+    private static Map<String, String> read(final Path file) throws Gnopt.InvalidOption, IOException {
+        final Map<String, String> options = new LinkedHashMap<>();
+        try (final ResponseFileArguments args = new ResponseFileArguments(file)) {
+            while (args.hasNext()) {
+                final String arg = args.next();
+                if (!arg.startsWith(Gnopt.OPT_PREFIX) || arg.length() == Gnopt.OPT_PREFIX.length()) {
+                    throw Gnopt.invalid(arg, "only options are allowed in an option file");
+                }
+                options.put(nameOf(arg), arg);
+            }
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return options;
+    }
+
+    private static String nameOf(final String arg) {
+        final int equals = arg.indexOf('=');
+        return arg.substring(Gnopt.OPT_PREFIX.length(), equals < 0 ? arg.length() : equals).replace('-', '_');
+    }
+
+    private static Map<String, Optional<String>> snapshotOf(final Map<String, String> applied) {
+        final Map<String, Optional<String>> map = new HashMap<>(applied.size());
+        applied.forEach((name, arg) -> {
+            final int equals = arg.indexOf('=');
+            map.put(name, equals < 0 ? Optional.empty() : Optional.of(arg.substring(equals + 1)));
+        });
+        return Collections.unmodifiableMap(map);
+    }
+}
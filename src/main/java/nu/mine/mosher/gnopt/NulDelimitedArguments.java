@@ -0,0 +1,90 @@
+package nu.mine.mosher.gnopt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Reads NUL-delimited, UTF-8 encoded arguments (such as the output of {@code find -print0})
+ * from a channel, one at a time. Memory use is bounded by the length of the longest argument,
+ * regardless of how many arguments there are. A final argument without a terminating NUL
+ * is still returned, unless it is empty.
+ *
+ * {@link IOException}s are thrown as {@link UncheckedIOException}s.
+ */
+final class NulDelimitedArguments implements Iterator<String> {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] arg = new byte[256];
+    private int argLength;
+    private String next;
+    private boolean eof;
+
+    NulDelimitedArguments(final ReadableByteChannel channel) {
+        this.channel = Objects.requireNonNull(channel);
+        this.buffer.flip();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (Objects.isNull(this.next)) {
+            this.next = read();
+        }
+        return Objects.nonNull(this.next);
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final String s = this.next;
+        this.next = null;
+        return s;
+    }
+
+
+
+    private String read() {
+        while (true) {
+            while (this.buffer.hasRemaining()) {
+                final byte b = this.buffer.get();
+                if (b == 0) {
+                    return take();
+                }
+                append(b);
+            }
+            if (this.eof) {
+                return this.argLength > 0 ? take() : null;
+            }
+            fill();
+        }
+    }
+
+    private void fill() {
+        this.buffer.clear();
+        try {
+            this.eof = this.channel.read(this.buffer) < 0;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.buffer.flip();
+    }
+
+    private void append(final byte b) {
+        if (this.argLength == this.arg.length) {
+            this.arg = Arrays.copyOf(this.arg, this.arg.length * 2);
+        }
+        this.arg[this.argLength++] = b;
+    }
+
+    private String take() {
+        final String s = new String(this.arg, 0, this.argLength, StandardCharsets.UTF_8);
+        this.argLength = 0;
+        return s;
+    }
+}
@@ -0,0 +1,118 @@
+package nu.mine.mosher.gnopt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Reads the arguments in a response file, one at a time. The file is memory-mapped
+ * (in windows, so files of any size are supported), and split lazily: only the
+ * current argument is ever copied onto the heap.
+ *
+ * The file is UTF-8 encoded. Arguments are separated by whitespace. Single or
+ * double quotes group characters (including whitespace) into one argument,
+ * and are removed; {@code ''} or {@code ""} is an empty argument.
+ *
+ * {@link IOException}s are thrown as {@link UncheckedIOException}s.
+ */
+final class ResponseFileArguments implements Iterator<String>, Closeable {
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private long position;
+    private ByteBuffer window = ByteBuffer.allocate(0);
+    private byte[] arg = new byte[256];
+    private int argLength;
+    private String next;
+
+    ResponseFileArguments(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = this.channel.size();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (Objects.isNull(this.next)) {
+            this.next = read();
+        }
+        return Objects.nonNull(this.next);
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final String s = this.next;
+        this.next = null;
+        return s;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+
+
+    private String read() {
+        boolean inArg = false;
+        byte quote = 0;
+        while (this.window.hasRemaining() || map()) {
+            final byte b = this.window.get();
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                } else {
+                    append(b);
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+                inArg = true;
+            } else if (isWhitespace(b)) {
+                if (inArg) {
+                    return take();
+                }
+            } else {
+                append(b);
+                inArg = true;
+            }
+        }
+        return inArg ? take() : null;
+    }
+
+    private boolean map() {
+        if (this.size <= this.position) {
+            return false;
+        }
+        final long length = Math.min(WINDOW_SIZE, this.size - this.position);
+        try {
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, length);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.position += length;
+        return true;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    private void append(final byte b) {
+        if (this.argLength == this.arg.length) {
+            this.arg = Arrays.copyOf(this.arg, this.arg.length * 2);
+        }
+        this.arg[this.argLength++] = b;
+    }
+
+    private String take() {
+        final String s = new String(this.arg, 0, this.argLength, StandardCharsets.UTF_8);
+        this.argLength = 0;
+        return s;
+    }
+}
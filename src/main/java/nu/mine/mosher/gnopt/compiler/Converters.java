@@ -0,0 +1,366 @@
+package nu.mine.mosher.gnopt.compiler;
+
+
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+
+
+/**
+ * Converters from an option's value to the type of the option processor
+ * method's parameter. The converter for each parameter is resolved once,
+ * when the option processor class is compiled.
+ *
+ * Every converter has type {@code (String value, int from) -> T}, and converts
+ * the region of {@code value} starting at index {@code from}, so the value never
+ * needs to be copied out of the command-line argument. A {@code null} value means
+ * the option was given with no value.
+ *
+ * The integer and floating-point converters validate their input without
+ * throwing (and catching) any intermediate exceptions, and the integer, boolean,
+ * and no-argument converters do not allocate anything. All converters report
+ * bad input by throwing a single {@link GnoptCompiler.InvalidValueException}.
+ */
+final class Converters {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Converters() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    /**
+     * Finds the converter for the given parameter type.
+     * @param type parameter type
+     * @return method handle of type {@code (String, int)T}, or {@code null} if there is no converter for
+     *      the given type
+     */
+    static MethodHandle forType(final Type type) {
+        try {
+            if (isOptionalString(type)) {
+                return find("toOptional", Optional.class);
+            }
+            if (!(type instanceof Class)) {
+                return null;
+            }
+            final Class<?> cls = (Class<?>)type;
+            if (cls.isEnum()) {
+                return MethodHandles.insertArguments(find("toEnum", Enum.class, Map.class), 0, enumConstants(cls)).asType(MethodType.methodType(cls, String.class, Integer.TYPE));
+            }
+            final String name = CONVERTERS.get(cls);
+            if (Objects.isNull(name)) {
+                return null;
+            }
+            return find(name, cls);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks whether there is a converter for the given parameter type,
+     * without building it (which {@link Converters#forType(Type)} does).
+     * @param type parameter type
+     * @return {@code true} if {@link Converters#forType(Type)} would return a converter
+     */
+    static boolean isSupported(final Type type) {
+        if (isOptionalString(type)) {
+            return true;
+        }
+        if (!(type instanceof Class)) {
+            return false;
+        }
+        final Class<?> cls = (Class<?>)type;
+        return cls.isEnum() || CONVERTERS.containsKey(cls);
+    }
+
+    /**
+     * Gets the converter for a method with no parameter (a plain flag).
+     * It checks that no value was given, and returns nothing.
+     * @return method handle of type {@code (String, int)void}
+     */
+    static MethodHandle forNoValue() {
+        try {
+            return find("noValue", Void.TYPE);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Determines whether an option with the given parameter type takes a value.
+     * @param type parameter type (which must have a converter), or {@code null} for a method with no parameter
+     * @return arity of the option
+     */
+    static GnoptCompiler.Arity arity(final Type type) {
+        if (Objects.isNull(type)) {
+            return GnoptCompiler.Arity.NONE;
+        }
+        if (isOptionalString(type) || OPTIONAL.contains(type)) {
+            return GnoptCompiler.Arity.OPTIONAL;
+        }
+        return GnoptCompiler.Arity.REQUIRED;
+    }
+
+    static boolean isOptionalString(final Type type) {
+        if (!(type instanceof ParameterizedType)) {
+            return false;
+        }
+        final ParameterizedType ptyp = (ParameterizedType)type;
+        return
+            ptyp.getRawType().equals(Optional.class) &&
+            ptyp.getActualTypeArguments()[0].equals(String.class);
+    }
+
+
+
+    private static final Map<Class<?>, String> CONVERTERS = Map.of(
+        Integer.TYPE, "toInt",
+        Long.TYPE, "toLong",
+        Double.TYPE, "toDouble",
+        Boolean.TYPE, "toBoolean",
+        Path.class, "toPath",
+        Duration.class, "toDuration",
+        OptionalInt.class, "toOptionalInt",
+        OptionalLong.class, "toOptionalLong"
+    );
+
+    private static final Set<Type> OPTIONAL = Set.of(Boolean.TYPE, OptionalInt.class, OptionalLong.class);
+
+    private static MethodHandle find(final String name, final Class<?> returnType, final Class<?>... leading) throws ReflectiveOperationException {
+        final List<Class<?>> params = new ArrayList<>(Arrays.asList(leading));
+        params.add(String.class);
+        params.add(Integer.TYPE);
+        return LOOKUP.findStatic(Converters.class, name, MethodType.methodType(returnType, params));
+    }
+
+    private static Map<String, Enum<?>> enumConstants(final Class<?> cls) {
+        final Map<String, Enum<?>> map = new HashMap<>();
+        for (final Object constant : cls.getEnumConstants()) {
+            final Enum<?> e = (Enum<?>)constant;
+            map.put(OptionTrie.fold(e.name()).toLowerCase(Locale.ROOT), e);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+
+
+    @SuppressWarnings("unused")
+    private static void noValue(final String value, final int from) {
+        if (Objects.nonNull(value)) {
+            throw new GnoptCompiler.InvalidValueException("unexpected value");
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static Optional<String> toOptional(final String value, final int from) {
+        if (Objects.isNull(value)) {
+            return Optional.empty();
+        }
+        return Optional.of(from == 0 ? value : value.substring(from));
+    }
+
+    @SuppressWarnings("unused")
+    private static int toInt(final String value, final int from) {
+        final long n = parseLong(required(value), from, value.length(), Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+        return (int)n;
+    }
+
+    @SuppressWarnings("unused")
+    private static long toLong(final String value, final int from) {
+        return parseLong(required(value), from, value.length(), Long.MIN_VALUE, Long.MAX_VALUE, "long");
+    }
+
+    @SuppressWarnings("unused")
+    private static OptionalInt toOptionalInt(final String value, final int from) {
+        return Objects.isNull(value) ? OptionalInt.empty() : OptionalInt.of(toInt(value, from));
+    }
+
+    @SuppressWarnings("unused")
+    private static OptionalLong toOptionalLong(final String value, final int from) {
+        return Objects.isNull(value) ? OptionalLong.empty() : OptionalLong.of(toLong(value, from));
+    }
+
+    /*
+     * Double.parseDouble only accepts a whole String, so (unlike the integer
+     * converters) this copies the value if it is only part of the argument.
+     */
+    @SuppressWarnings("unused")
+    private static double toDouble(final String value, final int from) {
+        if (!isDecimal(required(value), from, value.length())) {
+            throw invalid("double", value, from);
+        }
+        return Double.parseDouble(from == 0 ? value : value.substring(from)); // cannot throw, because value has been validated
+    }
+
+    /*
+     * A flag with no value (--verbose) means true.
+     */
+    @SuppressWarnings("unused")
+    private static boolean toBoolean(final String value, final int from) {
+        if (Objects.isNull(value)) {
+            return true;
+        }
+        if (isAnyOf(value, from, "true", "yes", "on", "1")) {
+            return true;
+        }
+        if (isAnyOf(value, from, "false", "no", "off", "0")) {
+            return false;
+        }
+        throw invalid("boolean", value, from);
+    }
+
+    @SuppressWarnings("unused")
+    private static Path toPath(final String value, final int from) {
+        final String s = required(value).substring(from);
+        try {
+            return Paths.get(s);
+        } catch (final InvalidPathException e) {
+            throw invalid("path", s, 0);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static Duration toDuration(final String value, final int from) {
+        final String s = required(value).substring(from);
+        try {
+            return Duration.parse(s);
+        } catch (final DateTimeParseException e) {
+            throw invalid("duration", s, 0);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static Enum<?> toEnum(final Map<String, Enum<?>> constants, final String value, final int from) {
+        final String s = required(value).substring(from);
+        final Enum<?> e = constants.get(OptionTrie.fold(s).toLowerCase(Locale.ROOT));
+        if (Objects.isNull(e)) {
+            throw invalid("one of " + constants.values(), s, 0);
+        }
+        return e;
+    }
+
+
+
+    private static String required(final String value) {
+        if (Objects.isNull(value)) {
+            throw new GnoptCompiler.InvalidValueException("missing required value");
+        }
+        return value;
+    }
+
+    private static GnoptCompiler.InvalidValueException invalid(final String type, final String value, final int from) {
+        return new GnoptCompiler.InvalidValueException("invalid value (expected " + type + "): \"" + value.substring(from) + "\"");
+    }
+
+    private static boolean isAnyOf(final String value, final int from, final String... words) {
+        final int len = value.length() - from;
+        for (final String word : words) {
+            if (len == word.length() && value.regionMatches(true, from, word, 0, len)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses an optionally signed decimal integer from {@code s}, from index {@code from} (inclusive)
+     * to index {@code to} (exclusive), checking the given bounds, without allocating anything
+     * or throwing any exception other than {@link GnoptCompiler.InvalidValueException}.
+     */
+    static long parseLong(final String s, final int from, final int to, final long min, final long max, final String type) {
+        final int len = to;
+        int i = from;
+        boolean negative = false;
+        if (i < len && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            ++i;
+        }
+        if (i == len) {
+            throw invalid(type, s, from);
+        }
+        // accumulate negatively, because |Long.MIN_VALUE| > Long.MAX_VALUE
+        final long limit = negative ? min : -max;
+        final long multmin = limit / 10;
+        long n = 0;
+        for (; i < len; ++i) {
+            final int d = digit(s.charAt(i));
+            if (d < 0 || n < multmin) {
+                throw invalid(type, s, from);
+            }
+            n *= 10;
+            if (n < limit + d) {
+                throw invalid(type, s, from);
+            }
+            n -= d;
+        }
+        return negative ? n : -n;
+    }
+
+    /**
+     * Checks if the region of the string is a decimal floating-point number acceptable to {@link Double#parseDouble(String)}:
+     * an optional sign, then either "NaN", "Infinity", or digits with an optional
+     * decimal point and an optional exponent.
+     */
+    static boolean isDecimal(final CharSequence s, final int from, final int to) {
+        final int len = to;
+        int i = from;
+        if (i < len && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            ++i;
+        }
+        if (equalsAt(s, i, to, "NaN") || equalsAt(s, i, to, "Infinity")) {
+            return true;
+        }
+        int digits = 0;
+        for (; i < len && 0 <= digit(s.charAt(i)); ++i) {
+            ++digits;
+        }
+        if (i < len && s.charAt(i) == '.') {
+            for (++i; i < len && 0 <= digit(s.charAt(i)); ++i) {
+                ++digits;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < len && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            ++i;
+            if (i < len && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                ++i;
+            }
+            int exponentDigits = 0;
+            for (; i < len && 0 <= digit(s.charAt(i)); ++i) {
+                ++exponentDigits;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        return i == len;
+    }
+
+    private static int digit(final char c) {
+        return '0' <= c && c <= '9' ? c - '0' : -1;
+    }
+
+    private static boolean equalsAt(final CharSequence s, final int from, final int to, final String word) {
+        if (to - from != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); ++i) {
+            if (s.charAt(from + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,14 +2,30 @@ package nu.mine.mosher.gnopt.compiler;
 
 
 
+import nu.mine.mosher.gnopt.GnoptCompileEvent;
+import nu.mine.mosher.gnopt.GnoptConcurrent;
+import nu.mine.mosher.gnopt.GnoptFlightRecorder;
+import nu.mine.mosher.gnopt.GnoptListener;
+import nu.mine.mosher.gnopt.GnoptListeners;
+import nu.mine.mosher.gnopt.GnoptOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 
 
@@ -18,6 +34,9 @@ import java.util.function.Predicate;
  * A compiler that compiles an option processor class.
  * End users should prefer to use the {@link nu.mine.mosher.gnopt.Gnopt} class
  * instead of this class directly.
+ *
+ * A compiled instance is immutable, and can be shared across threads.
+ * See {@link GnoptCompilerCache} for caching compiled instances.
  */
 public class GnoptCompiler {
     /**
@@ -32,9 +51,51 @@ public class GnoptCompiler {
      */
     public static final String STATIC_MAPPING_FIELD_NAME = "GNOPT";
 
+    /**
+     * The type of every {@link MethodHandle} returned by {@link GnoptCompiler#handle(String)}:
+     * {@code (Object instance, Optional value) -> void}.
+     */
+    public static final MethodType HANDLE_TYPE = MethodType.methodType(Void.TYPE, Object.class, Optional.class);
+
+    /**
+     * The type of every {@link MethodHandle} returned by {@link GnoptCompiler#valueHandle(CharSequence, int, int)}:
+     * {@code (Object instance, String value, int from) -> void}. The option's value is the
+     * region of {@code value} starting at index {@code from} (typically, the part of the
+     * command-line argument after the {@code =}), or {@code value} is {@code null} if the
+     * option has no value. Numeric values are converted directly from that region, so
+     * no {@link Optional} or substring is created.
+     */
+    public static final MethodType VALUE_HANDLE_TYPE = MethodType.methodType(Void.TYPE, Object.class, String.class, Integer.TYPE);
+
+    /**
+     * Whether an option takes a value, as determined (at compile time)
+     * by the parameter of the method that processes it.
+     */
+    public enum Arity {
+        /** The method has no parameter; the option must not be given a value. */
+        NONE,
+        /** The value can be omitted (for example, an {@code Optional<String>} or {@code boolean} parameter). */
+        OPTIONAL,
+        /** The option must be given a value (for example, an {@code int} parameter). */
+        REQUIRED
+    }
+
     public static final class InvalidOptionProcessorException extends RuntimeException {
     }
 
+    /**
+     * Thrown (by the method handles returned from {@link GnoptCompiler#handle(String)})
+     * when an option's value cannot be converted to the type of the method's parameter.
+     * It has no stack trace, so rejecting bad input is cheap.
+     */
+    public static final class InvalidValueException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidValueException(final String message) {
+            super(message, null, false, false);
+        }
+    }
+
     /**
      * Given an option processor class, compiles it, analyzing it for errors.
      *
@@ -44,9 +105,70 @@ public class GnoptCompiler {
      *      (if so, {@link GnoptCompiler#failure()} will return {@code true})
      */
     public static GnoptCompiler compile(final Class<?> classProcessor) throws InvalidOptionProcessorException {
-        final GnoptCompiler compiler = new GnoptCompiler();
+        return compile(classProcessor, false);
+    }
+
+    /**
+     * Given an option processor class, compiles it lazily: only the names and signatures of its options
+     * (and the {@link GnoptCompiler#STATIC_MAPPING_FIELD_NAME} mapping) are analyzed now.
+     * A method (or field) whose signature does not meet the requirements (for example, one that
+     * returns a value) is left out, so it is not offered as an option (for example, in suggestions
+     * or completions), just as if the class had been compiled eagerly (and failed).
+     * Each option's method handle is built the first time the option is looked up; if it cannot be,
+     * the lookup throws {@link InvalidOptionProcessorException}.
+     * This makes compiling a class with many options much faster, when only a few are used.
+     * Call {@link GnoptCompiler#validate()} (for example, in a unit test) to check every option,
+     * and report every method (or field) that was left out.
+     *
+     * @param classProcessor option processor class, cannot be {@code null}
+     * @return lazily compiled option processor
+     * @throws InvalidOptionProcessorException if the structure of the classProcessor is invalid
+     * @see GnoptCompilerCache#setLazy(boolean)
+     */
+    public static GnoptCompiler compileLazily(final Class<?> classProcessor) throws InvalidOptionProcessorException {
+        return compile(classProcessor, true);
+    }
+
+    /**
+     * Checks every option now (which {@link GnoptCompiler#compileLazily(Class)} defers),
+     * logging all failures. For an eagerly compiled instance, this does nothing.
+     *
+     * @return this compiled option processor
+     * @throws InvalidOptionProcessorException if any option is invalid
+     */
+    public GnoptCompiler validate() throws InvalidOptionProcessorException {
+        boolean valid = this.invalidMembers.isEmpty();
+        for (final Member member : this.invalidMembers) {
+            if (member instanceof Method) {
+                checkMethod(this.classProcessor, (Method)member);
+            } else {
+                checkField(this.classProcessor, (Field)member);
+            }
+        }
+        for (final Entry entry : this.mapNameToEntry.values()) {
+            try {
+                entry.resolve();
+            } catch (final InvalidOptionProcessorException e) {
+                valid = false;
+            }
+        }
+        if (!valid) {
+            throw new InvalidOptionProcessorException();
+        }
+        return this;
+    }
 
-        compiler.comp(Objects.requireNonNull(classProcessor));
+    private static GnoptCompiler compile(final Class<?> classProcessor, final boolean lazy) throws InvalidOptionProcessorException {
+        Objects.requireNonNull(classProcessor);
+        final GnoptCompiler compiler = new GnoptCompiler(classProcessor, lazy);
+
+        final GnoptListener listener = GnoptListeners.current();
+        final boolean jfr = GnoptFlightRecorder.isRecording();
+        if (Objects.isNull(listener) && !jfr) {
+            compiler.comp(classProcessor);
+        } else {
+            compiler.compInstrumented(classProcessor, listener, jfr);
+        }
 
         if (compiler.failure()) {
             throw new InvalidOptionProcessorException();
@@ -54,6 +176,43 @@ public class GnoptCompiler {
         return compiler;
     }
 
+    /*
+     * Builds a compiled option processor from the options recorded in a GnoptIndex
+     * (each as its option name, member name, and member descriptor), and the names of the
+     * concurrent options. Each option's method (or field) is looked up, and checked,
+     * the first time the option is used.
+     */
+    static GnoptCompiler indexed(final Class<?> classProcessor, final List<String[]> options, final Set<String> concurrent) {
+        final GnoptCompiler compiler = new GnoptCompiler(classProcessor, true);
+        for (final String[] option : options) {
+            compiler.mapNameToEntry.put(option[0], compiler.new Entry(option[1], option[2], concurrent.contains(option[0])));
+        }
+        compiler.buildTrie();
+        return compiler;
+    }
+
+    /*
+     * The method or field of each option, in the order they were compiled.
+     */
+    Map<String, Member> members() {
+        final Map<String, Member> map = new LinkedHashMap<>();
+        this.mapNameToEntry.forEach((name, entry) -> map.put(name, entry.member()));
+        return map;
+    }
+
+    /*
+     * The names of the options whose methods are marked with GnoptConcurrent.
+     */
+    Set<String> concurrent() {
+        final Set<String> set = new HashSet<>();
+        this.mapNameToEntry.forEach((name, entry) -> {
+            if (entry.concurrent) {
+                set.add(name);
+            }
+        });
+        return set;
+    }
+
     /**
      * Checks of the compilation failed.
      * @return true if the compilation failed
@@ -64,22 +223,342 @@ public class GnoptCompiler {
 
     /**
      * Get the method that processes the given option.
+     * Hyphen-minus and underscore characters in the name are treated as equivalent.
      * @param name name of the option (as passed on the command line)
      * @return the method to invoke to process the value of the option, or empty
+     *      (if there is no such option, or if the option is stored into a field)
      */
     public Optional<Method> processor(final String name) {
-        return Optional.ofNullable(this.mapNameToMethod.get(name));
+        return Optional.ofNullable(this.trieOptions.get(name)).map(Entry::method);
+    }
+
+    /**
+     * Get all the methods that process options.
+     * @return unmodifiable {@link Map} of option name to the method that processes it
+     */
+    public Map<String, Method> processors() {
+        final Map<String, Method> map = new HashMap<>();
+        this.mapNameToEntry.forEach((name, entry) -> {
+            final Method method = entry.method();
+            if (Objects.nonNull(method)) {
+                map.put(name, method);
+            }
+        });
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Get all the fields (marked with {@link GnoptOption}) that options are stored into.
+     * @return unmodifiable {@link Map} of option name to the field it is stored into
+     */
+    public Map<String, Field> fields() {
+        final Map<String, Field> map = new HashMap<>();
+        this.mapNameToEntry.forEach((name, entry) -> {
+            final Field field = entry.field();
+            if (Objects.nonNull(field)) {
+                map.put(name, field);
+            }
+        });
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Get the pre-adapted method handle that processes the given option.
+     * The handle has type {@link GnoptCompiler#HANDLE_TYPE}, so it can be
+     * called with {@link MethodHandle#invokeExact}, passing the option processor
+     * instance and the {@link Optional} value. Unlike {@link Method#invoke},
+     * any exception thrown by the method is propagated unwrapped.
+     * Hyphen-minus and underscore characters in the name are treated as equivalent.
+     *
+     * @param name name of the option (as passed on the command line)
+     * @return the method handle to invoke to process the value of the option, or empty
+     */
+    public Optional<MethodHandle> handle(final String name) {
+        return Optional.ofNullable(handle(name, 0, name.length()));
+    }
+
+    /**
+     * Get the pre-adapted method handle that processes the option whose name
+     * is the given region of a string (for example, of a whole command-line argument).
+     * This lookup does not allocate any objects.
+     * Hyphen-minus and underscore characters in the name are treated as equivalent.
+     *
+     * @param s string containing the name of the option
+     * @param from index of the first character of the name
+     * @param to index after the last character of the name
+     * @return the method handle to invoke to process the value of the option, or {@code null} if there is none
+     * @see GnoptCompiler#handle(String)
+     */
+    public MethodHandle handle(final CharSequence s, final int from, final int to) {
+        final Entry entry = this.trieOptions.get(s, from, to);
+        return Objects.isNull(entry) ? null : entry.resolve().handle;
+    }
+
+    /**
+     * Get the specialized method handle, of type {@link GnoptCompiler#VALUE_HANDLE_TYPE}, that
+     * processes the option whose name is the given region of a string. It is like
+     * {@link GnoptCompiler#handle(CharSequence, int, int)}, but it takes the option's value
+     * as a region of a string, rather than as an {@link Optional}, so that methods with
+     * primitive parameters (or no parameter) can be called without allocating anything.
+     *
+     * @param s string containing the name of the option
+     * @param from index of the first character of the name
+     * @param to index after the last character of the name
+     * @return the method handle to invoke to process the value of the option, or {@code null} if there is none
+     */
+    public MethodHandle valueHandle(final CharSequence s, final int from, final int to) {
+        final Entry entry = this.trieOptions.get(s, from, to);
+        return Objects.isNull(entry) ? null : entry.resolve().valueHandle;
+    }
+
+    /**
+     * Checks whether any option is processed by a method marked with {@link GnoptConcurrent}.
+     * @return {@code true} if any option can be dispatched concurrently
+     */
+    public boolean hasConcurrent() {
+        return this.hasConcurrent;
+    }
+
+    /**
+     * Checks whether the option whose name is the given region of a string
+     * is processed by a method marked with {@link GnoptConcurrent}.
+     * This lookup does not allocate any objects, and (in lazy mode) does not resolve the option.
+     * Hyphen-minus and underscore characters in the name are treated as equivalent.
+     *
+     * @param s string containing the name of the option
+     * @param from index of the first character of the name
+     * @param to index after the last character of the name
+     * @return {@code true} if the option can be dispatched concurrently
+     */
+    public boolean isConcurrent(final CharSequence s, final int from, final int to) {
+        final Entry entry = this.trieOptions.get(s, from, to);
+        return Objects.nonNull(entry) && entry.concurrent;
+    }
+
+    /**
+     * Finds the names of the options that begin with the given region of a string,
+     * as a GNU-style abbreviation (for example, "verb" for "verbose"). If the region is
+     * the whole name of an option, only that name is returned. The name of the method for
+     * non-option arguments is never returned for an abbreviation. The search takes time
+     * proportional to the length of the region, whatever the number of options.
+     * Hyphen-minus and underscore characters in the name are treated as equivalent.
+     *
+     * @param s string containing the (abbreviated) name of the option
+     * @param from index of the first character of the name
+     * @param to index after the last character of the name
+     * @return unmodifiable {@link List} of the names (with underscores) of the matching options, sorted;
+     *      the abbreviation is unambiguous if there is exactly one
+     */
+    public List<String> complete(final CharSequence s, final int from, final int to) {
+        final List<String> names = this.trieOptions.complete(s, from, to);
+        if (!names.contains(METHOD_NAME_FOR_UNNAMED_ARGS) || to - from == METHOD_NAME_FOR_UNNAMED_ARGS.length()) {
+            return names;
+        }
+        final List<String> options = new ArrayList<>(names);
+        options.remove(METHOD_NAME_FOR_UNNAMED_ARGS);
+        return Collections.unmodifiableList(options);
+    }
+
+    /**
+     * Finds the names of the options closest to the given (invalid) option name,
+     * to suggest to the user. The index of names (see {@link GnoptSuggester})
+     * is built the first time this is called, and then reused.
+     *
+     * @param name name of the option (as passed on the command line)
+     * @return unmodifiable {@link List} of option names (with underscores), closest first; or empty if none is close
+     */
+    public List<String> suggest(final String name) {
+        GnoptSuggester index = this.suggester;
+        if (Objects.isNull(index)) {
+            synchronized (this) {
+                index = this.suggester;
+                if (Objects.isNull(index)) {
+                    index = GnoptSuggester.of(this.mapNameToEntry.keySet());
+                    this.suggester = index;
+                }
+            }
+        }
+        return index.suggest(name);
+    }
+
+    /**
+     * Get whether the given option takes a value.
+     * Hyphen-minus and underscore characters in the name are treated as equivalent.
+     * @param name name of the option (as passed on the command line)
+     * @return the arity of the option, or empty if there is no such option
+     */
+    public Optional<Arity> arity(final String name) {
+        return Optional.ofNullable(this.trieOptions.get(name)).map(e -> e.resolve().arity);
     }
 
 
 
     private static final Logger LOG = LoggerFactory.getLogger(GnoptCompiler.class);
     private static final Map<String, Predicate<Method>> REQUIREMENTS = requirements();
+    private static final Map<String, Predicate<Field>> FIELD_REQUIREMENTS = fieldRequirements();
 
-    private final Map<String, Method> mapNameToMethod = new HashMap<>();
+    private final Class<?> classProcessor;
+    private final boolean lazy;
+    private final Map<String, Entry> mapNameToEntry = new LinkedHashMap<>();
+    /**
+     * In lazy mode, the members that fail a requirement (left out of the options), to be reported by validate.
+     */
+    private final List<Member> invalidMembers = new ArrayList<>();
+    private OptionTrie<Entry> trieOptions;
+    private boolean hasConcurrent;
+    private volatile GnoptSuggester suggester;
     private boolean failure;
 
-    private GnoptCompiler() {
+    /*
+     * The method (or field) of one option, and its compiled Option, which
+     * (in lazy mode) is resolved the first time it is needed, and then memoized.
+     * An entry loaded from a GnoptIndex holds only the name and descriptor
+     * of its method (or field), which is also resolved the first time it is needed.
+     */
+    private final class Entry {
+        private final String memberName;
+        private final String descriptor;
+        private final boolean concurrent;
+        private volatile Member member;
+        private volatile Option option;
+        private boolean invalid; // guarded by this
+
+        private Entry(final Member member, final Option option) {
+            this.memberName = member.getName();
+            this.descriptor = null;
+            this.concurrent = ((AnnotatedElement)member).isAnnotationPresent(GnoptConcurrent.class);
+            this.member = member;
+            this.option = option;
+        }
+
+        private Entry(final String memberName, final String descriptor, final boolean concurrent) {
+            this.memberName = memberName;
+            this.descriptor = descriptor;
+            this.concurrent = concurrent;
+        }
+
+        private Method method() {
+            final Member m = member();
+            return m instanceof Method ? (Method)m : null;
+        }
+
+        private Field field() {
+            final Member m = member();
+            return m instanceof Field ? (Field)m : null;
+        }
+
+        private Member member() {
+            final Member resolved = this.member;
+            return Objects.nonNull(resolved) ? resolved : resolveMember();
+        }
+
+        private Option resolve() {
+            final Option resolved = this.option;
+            return Objects.nonNull(resolved) ? resolved : resolveOnce();
+        }
+
+        private synchronized Member resolveMember() {
+            if (Objects.isNull(this.member)) {
+                try {
+                    if (this.descriptor.startsWith("(")) {
+                        final MethodType type = MethodType.fromMethodDescriptorString(this.descriptor, classProcessor.getClassLoader());
+                        this.member = classProcessor.getMethod(this.memberName, type.parameterArray());
+                    } else {
+                        this.member = classProcessor.getField(this.memberName);
+                    }
+                } catch (final ReflectiveOperationException | RuntimeException e) {
+                    LOG.error("Failure, requirement=\"must exist\", member=\"{}\"", this.memberName, e);
+                    this.invalid = true;
+                    throw new InvalidOptionProcessorException();
+                }
+            }
+            return this.member;
+        }
+
+        private synchronized Option resolveOnce() {
+            if (Objects.isNull(this.option)) {
+                if (!this.invalid) {
+                    final Member m = member();
+                    LOG.trace("----> Resolving, member=\"{}\"", m);
+                    this.option = m instanceof Method ? checkMethod(classProcessor, (Method)m) : checkField(classProcessor, (Field)m);
+                    this.invalid = Objects.isNull(this.option);
+                }
+                if (this.invalid) {
+                    throw new InvalidOptionProcessorException();
+                }
+            }
+            return this.option;
+        }
+    }
+
+    /*
+     * The compiled form of an option, which is processed either by a method, or by storing into a field.
+     */
+    private static final class Option {
+        private final Arity arity;
+        private final MethodHandle valueHandle;
+        private final MethodHandle handle;
+
+        private Option(final Type type, final MethodHandle valueHandle) {
+            this.arity = Converters.arity(type);
+            this.valueHandle = valueHandle;
+            this.handle = MethodHandles.insertArguments(
+                MethodHandles.filterArguments(valueHandle, 1, OPTIONAL_VALUE), 2, 0).asType(HANDLE_TYPE);
+        }
+    }
+
+    /*
+     * (Optional)String: unwraps an Optional value, or null if it is empty,
+     * to adapt a VALUE_HANDLE_TYPE handle to HANDLE_TYPE.
+     */
+    private static final MethodHandle OPTIONAL_VALUE = optionalValue();
+
+    private static MethodHandle optionalValue() {
+        try {
+            final MethodHandle orElse = MethodHandles.publicLookup().findVirtual(Optional.class, "orElse", MethodType.methodType(Object.class, Object.class));
+            return MethodHandles.insertArguments(orElse, 1, (Object)null).asType(MethodType.methodType(String.class, Optional.class));
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private GnoptCompiler(final Class<?> classProcessor, final boolean lazy) {
+        this.classProcessor = classProcessor;
+        this.lazy = lazy;
+    }
+
+    /*
+     * Compiles, notifying the listener (if any), and recording a JFR event (if a recording is running).
+     */
+    private void compInstrumented(final Class<?> classProcessor, final GnoptListener listener, final boolean jfr) {
+        final GnoptCompileEvent event = jfr ? new GnoptCompileEvent() : null;
+        if (Objects.nonNull(listener)) {
+            listener.compileStarted(classProcessor);
+        }
+        if (Objects.nonNull(event)) {
+            event.begin();
+        }
+        final long start = System.nanoTime();
+        try {
+            comp(classProcessor);
+        } catch (final RuntimeException e) {
+            this.failure = true;
+            throw e;
+        } finally {
+            if (Objects.nonNull(listener)) {
+                listener.compileFinished(classProcessor, System.nanoTime() - start, !this.failure);
+            }
+            if (Objects.nonNull(event)) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.optionProcessor = classProcessor;
+                    event.methods = (int)this.mapNameToEntry.values().stream().filter(e -> e.member instanceof Method).count();
+                    event.fields = (int)this.mapNameToEntry.values().stream().filter(e -> e.member instanceof Field).count();
+                    event.success = !this.failure;
+                    event.commit();
+                }
+            }
+        }
     }
 
     private void comp(final Class<?> classProcessor) {
@@ -89,25 +568,101 @@ public class GnoptCompiler {
                 LOG.trace("----> Skipping, method=\"{}\"", method);
             } else {
                 LOG.trace("----> Checking, method=\"{}\"", method);
-                useMethodIfValid(method, method.getName());
+                useMethodIfValid(classProcessor, method, method.getName());
             }
         }
 
         final var map = getMapping(classProcessor);
         map.forEach((k,v) -> {
-            try {
-                final var m = classProcessor.getMethod(v, Optional.class);
-                LOG.trace("----> Checking, method=\"{}\"", m);
-                useMethodIfValid(m, k);
-            } catch (NoSuchMethodException e) {
-                throw new RuntimeException(e);
+            final var targets = getMethods(classProcessor, v);
+            if (targets.isEmpty()) {
+                throw new RuntimeException(new NoSuchMethodException(classProcessor.getName() + "." + v));
+            }
+            if (1 < targets.size()) {
+                LOG.error("Failure, requirement=\"mapped method cannot be overloaded\", option=\"{}\", methods=\"{}\"", k, targets);
+                this.failure = true;
+                return;
             }
+            final var m = targets.get(0);
+            LOG.trace("----> Checking, method=\"{}\"", m);
+            useMethodIfValid(classProcessor, m, k);
         });
+
+        for (final Field field : classProcessor.getFields()) {
+            final GnoptOption annotation = field.getAnnotation(GnoptOption.class);
+            if (Objects.nonNull(annotation)) {
+                LOG.trace("----> Checking, field=\"{}\"", field);
+                useFieldIfValid(classProcessor, field, annotation.value().isEmpty() ? field.getName() : annotation.value());
+            }
+        }
+
+        buildTrie();
+    }
+
+    private void buildTrie() {
+        this.trieOptions = new OptionTrie<>(this.mapNameToEntry);
+        this.hasConcurrent = this.mapNameToEntry.values().stream().anyMatch(e -> e.concurrent);
+    }
+
+    private void useFieldIfValid(final Class<?> classProcessor, final Field field, final String optionName) {
+        if (this.mapNameToEntry.containsKey(optionName)) {
+            LOG.error("Failure, requirement=\"option name must be unique\", field=\"{}\"", field);
+            this.failure = true;
+            return;
+        }
+
+        if (this.lazy && !FIELD_REQUIREMENTS.values().stream().allMatch(r -> r.test(field))) {
+            this.invalidMembers.add(field);
+            return;
+        }
+        final Option option = this.lazy ? null : checkField(classProcessor, field);
+        if (!this.lazy && Objects.isNull(option)) {
+            this.failure = true;
+        } else {
+            this.mapNameToEntry.put(optionName, new Entry(field, option));
+        }
     }
 
-    private void useMethodIfValid(final Method method, final String optionName) {
+    private void useMethodIfValid(final Class<?> classProcessor, final Method method, final String optionName) {
         // TODO: add some validation of the optionName such as: can't be empty, can't be "__", others?
+        if (this.mapNameToEntry.containsKey(optionName)) {
+            LOG.error("Failure, requirement=\"option name must be unique\", method=\"{}\"", method);
+            this.failure = true;
+            return;
+        }
+        if (this.lazy && !REQUIREMENTS.values().stream().allMatch(r -> r.test(method))) {
+            this.invalidMembers.add(method);
+            return;
+        }
+        final Option option = this.lazy ? null : checkMethod(classProcessor, method);
+        if (!this.lazy && Objects.isNull(option)) {
+            this.failure = true;
+        } else {
+            this.mapNameToEntry.put(optionName, new Entry(method, option));
+        }
+    }
+
+    /*
+     * Checks the field, and builds its option; or logs the failures, and returns null.
+     */
+    private static Option checkField(final Class<?> classProcessor, final Field field) {
+        boolean badField = false;
 
+        for (final Map.Entry<String, Predicate<Field>> req : FIELD_REQUIREMENTS.entrySet()) {
+            if (!req.getValue().test(field)) {
+                LOG.error("Failure, requirement=\"{}\", field=\"{}\"", req.getKey(), field);
+                badField = true;
+            }
+        }
+
+        final MethodHandle handle = badField ? null : adapt(classProcessor, field);
+        return Objects.isNull(handle) ? null : new Option(field.getGenericType(), handle);
+    }
+
+    /*
+     * Checks the method, and builds its option; or logs the failures, and returns null.
+     */
+    private static Option checkMethod(final Class<?> classProcessor, final Method method) {
         boolean badMethod = false;
 
         for (final Map.Entry<String, Predicate<Method>> req : REQUIREMENTS.entrySet()) {
@@ -117,30 +672,77 @@ public class GnoptCompiler {
             }
         }
 
-        if (badMethod) {
-            this.failure = true;
-        } else {
-            this.mapNameToMethod.put(optionName, method);
+        final MethodHandle handle = badMethod ? null : adapt(classProcessor, method);
+        return Objects.isNull(handle) ? null : new Option(method.getParameterCount() == 0 ? null : method.getGenericParameterTypes()[0], handle);
+    }
+
+    /*
+     * Look up the method through classProcessor itself (rather than through its declaring class),
+     * so public methods inherited from non-public classes are still accessible.
+     * The parameter's converter (if any) is folded into the handle here, once,
+     * giving a handle of type VALUE_HANDLE_TYPE.
+     */
+    private static MethodHandle adapt(final Class<?> classProcessor, final Method method) {
+        try {
+            final MethodHandle handle = MethodHandles.publicLookup()
+                .findVirtual(classProcessor, method.getName(), MethodType.methodType(method.getReturnType(), method.getParameterTypes()));
+            final MethodHandle converter;
+            if (method.getParameterCount() == 0) {
+                converter = Converters.forNoValue();
+            } else {
+                converter = Converters.forType(method.getGenericParameterTypes()[0]);
+            }
+            return MethodHandles.collectArguments(handle, 1, converter).asType(VALUE_HANDLE_TYPE);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOG.error("Failure, requirement=\"must be accessible\", method=\"{}\"", method, e);
+            return null;
         }
     }
 
+    /*
+     * Resolve a VarHandle for the field, once, and fold the converter into its setter,
+     * so that dispatching the option is a single store, with no method call.
+     */
+    private static MethodHandle adapt(final Class<?> classProcessor, final Field field) {
+        try {
+            final VarHandle var = MethodHandles.publicLookup().findVarHandle(classProcessor, field.getName(), field.getType());
+            final MethodHandle set = var.toMethodHandle(VarHandle.AccessMode.SET);
+            return MethodHandles.collectArguments(set, 1, Converters.forType(field.getGenericType())).asType(VALUE_HANDLE_TYPE);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOG.error("Failure, requirement=\"must be accessible\", field=\"{}\"", field, e);
+            return null;
+        }
+    }
+
+    private static Map<String, Predicate<Field>> fieldRequirements() {
+        return Map.of(
+            "must be of a supported type", f -> Converters.isSupported(f.getGenericType()),
+            "cannot be static", f -> !Modifier.isStatic(f.getModifiers()),
+            "cannot be final", f -> !Modifier.isFinal(f.getModifiers())
+        );
+    }
+
     private static Map<String, Predicate<Method>> requirements() {
         return Map.of(
             "return type must be void", m -> m.getReturnType().equals(Void.TYPE),
-            "must have one and only one Optional<String> argument", m -> m.getParameters().length == 1 && isOptionalString(m.getParameters()[0]),
-            "cannot be abstract", m -> !Modifier.isAbstract(m.getModifiers())
+            "must have no argument, or one argument of a supported type", m -> m.getParameterCount() == 0 || (m.getParameterCount() == 1 && Converters.isSupported(m.getGenericParameterTypes()[0])),
+            "cannot be abstract", m -> !Modifier.isAbstract(m.getModifiers()),
+            "method for non-option arguments must have an argument", m -> !m.getName().equals(METHOD_NAME_FOR_UNNAMED_ARGS) || m.getParameterCount() == 1
         );
     }
 
-    private static boolean isOptionalString(final Parameter p) {
-        final Type typ = p.getParameterizedType();
-        if (!(typ instanceof ParameterizedType)) {
-            return false;
+    /*
+     * The methods that a mapping could refer to by the given name. More than one
+     * (an overloaded name) is ambiguous, because the order of getMethods is unspecified.
+     */
+    private static List<Method> getMethods(final Class<?> classProcessor, final String name) {
+        final List<Method> methods = new ArrayList<>(1);
+        for (final Method method : classProcessor.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() <= 1 && !method.isBridge()) {
+                methods.add(method);
+            }
         }
-        final ParameterizedType ptyp = (ParameterizedType)typ;
-        return
-            ptyp.getRawType().equals(Optional.class) &&
-            ptyp.getActualTypeArguments()[0].equals(String.class);
+        return methods;
     }
 
     private static Map<String,String> getMapping(final Class<?> classProcessor) {
@@ -156,6 +758,7 @@ public class GnoptCompiler {
         return
             method.getDeclaringClass().equals(Object.class) ||
             Modifier.isStatic(method.getModifiers()) ||
+            method.isBridge() ||
             isHidden(method);
     }
 
@@ -0,0 +1,127 @@
+package nu.mine.mosher.gnopt.compiler;
+
+
+
+import java.util.Objects;
+import java.util.Optional;
+
+
+
+/**
+ * A cache of compiled option processor classes.
+ * Each option processor class is compiled at most once (unless it is evicted),
+ * and the result is shared across threads.
+ *
+ * The cache is keyed through {@link ClassValue}, so it never prevents
+ * an option processor class (or its {@link ClassLoader}) from being unloaded.
+ *
+ * A class that has an up-to-date {@link GnoptIndex} is loaded from its index,
+ * rather than compiled.
+ *
+ * {@link nu.mine.mosher.gnopt.Gnopt} uses this cache by default.
+ */
+public final class GnoptCompilerCache {
+    /**
+     * Gets the compiled option processor for the given class, compiling it
+     * (and caching the result) if necessary.
+     * If the cache is disabled, this always compiles the class.
+     * Failed compilations are never cached.
+     *
+     * @param classProcessor option processor class, cannot be {@code null}
+     * @return compiled option processor
+     * @throws GnoptCompiler.InvalidOptionProcessorException if the classProcessor is invalid
+     */
+    public static GnoptCompiler get(final Class<?> classProcessor) throws GnoptCompiler.InvalidOptionProcessorException {
+        Objects.requireNonNull(classProcessor);
+        if (!enabled) {
+            return compile(classProcessor);
+        }
+        return cache.get(classProcessor);
+    }
+
+    /**
+     * Removes the compiled option processor for the given class from the cache, if present.
+     * The next call to {@link GnoptCompilerCache#get(Class)} will recompile it.
+     *
+     * @param classProcessor option processor class, cannot be {@code null}
+     */
+    public static void evict(final Class<?> classProcessor) {
+        cache.remove(Objects.requireNonNull(classProcessor));
+    }
+
+    /**
+     * Removes all compiled option processors from the cache.
+     */
+    public static void clear() {
+        cache = newCache();
+    }
+
+    /**
+     * Enables or disables the cache. Disabling the cache also clears it.
+     * The cache is enabled by default.
+     *
+     * @param enable {@code true} to enable the cache, {@code false} to disable it
+     */
+    public static void setEnabled(final boolean enable) {
+        enabled = enable;
+        if (!enable) {
+            clear();
+        }
+    }
+
+    /**
+     * Checks if the cache is enabled.
+     * @return {@code true} if the cache is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Selects lazy compilation (see {@link GnoptCompiler#compileLazily(Class)}) or
+     * eager compilation (see {@link GnoptCompiler#compile(Class)}) for classes compiled
+     * from now on. Changing the setting also clears the cache.
+     * Compilation is eager by default.
+     *
+     * @param enable {@code true} to compile lazily, {@code false} to compile eagerly
+     */
+    public static void setLazy(final boolean enable) {
+        lazy = enable;
+        clear();
+    }
+
+    /**
+     * Checks if classes are compiled lazily.
+     * @return {@code true} if classes are compiled lazily
+     */
+    public static boolean isLazy() {
+        return lazy;
+    }
+
+
+
+    private static volatile boolean enabled = true;
+    private static volatile boolean lazy;
+    private static volatile ClassValue<GnoptCompiler> cache = newCache();
+
+    private GnoptCompilerCache() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    private static ClassValue<GnoptCompiler> newCache() {
+        return new ClassValue<>() {
+            @Override
+            protected GnoptCompiler computeValue(final Class<?> classProcessor) {
+                return compile(classProcessor);
+            }
+        };
+    }
+
+    private static GnoptCompiler compile(final Class<?> classProcessor) {
+        final Optional<GnoptCompiler> indexed = GnoptIndex.load(classProcessor);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+        return lazy ? GnoptCompiler.compileLazily(classProcessor) : GnoptCompiler.compile(classProcessor);
+    }
+}
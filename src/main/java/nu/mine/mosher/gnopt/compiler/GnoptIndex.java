@@ -0,0 +1,294 @@
+package nu.mine.mosher.gnopt.compiler;
+
+import nu.mine.mosher.gnopt.Gnopt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+
+
+/**
+ * A compact, binary index of a compiled option processor class, which lets
+ * {@link GnoptCompilerCache} skip the reflective scan of the class at startup.
+ *
+ * The index is written at build time, as the classpath resource
+ * {@code META-INF/gnopt/<class name>.idx}, for example:
+ * {@code java -cp ... nu.mine.mosher.gnopt.compiler.GnoptIndex --output=build/resources/main demo.FoobarOpts}
+ *
+ * It records the name of each option (including those from the
+ * {@link GnoptCompiler#STATIC_MAPPING_FIELD_NAME} mapping), the name and descriptor
+ * of the method or field that processes it, and whether the method is marked with
+ * {@link nu.mine.mosher.gnopt.GnoptConcurrent}, along with a checksum of the class's shape
+ * (the CRC-32 and size of the class files of the class, its superclasses, and its interfaces;
+ * for a class in a jar file, these are read from the jar's directory, without reading the
+ * class file itself). When the index
+ * is loaded, each method or field is looked up only when its option is first used.
+ * If the index is missing, or stale (because the class has changed since it was written),
+ * or corrupt, the class is compiled normally.
+ */
+public final class GnoptIndex {
+    /**
+     * Prefix of the name of the classpath resource of an index.
+     */
+    public static final String RESOURCE_PREFIX = "META-INF/gnopt/";
+
+    /**
+     * Suffix of the name of the classpath resource of an index.
+     */
+    public static final String RESOURCE_SUFFIX = ".idx";
+
+    /**
+     * Writes the index of each option processor class named on the command line.
+     *
+     * @param args {@code --output=directory} (the root of the resources) followed by
+     *             fully qualified option processor class names
+     *             (the options are parsed here directly, not by {@link Gnopt})
+     * @throws Throwable if an option is invalid, or any class cannot be loaded or compiled, or an index cannot be written
+     */
+    public static void main(final String... args) throws Throwable {
+        final Opts opts = Opts.parse(args);
+        final List<Class<?>> classes = new ArrayList<>();
+        for (final String name : opts.classes) {
+            classes.add(Class.forName(name, false, Thread.currentThread().getContextClassLoader()));
+        }
+        write(opts.output, classes);
+    }
+
+    /**
+     * Writes the index of each of the given classes under the given directory
+     * (as {@code META-INF/gnopt/<class name>.idx}).
+     *
+     * @param directory root directory of the resources (created if necessary)
+     * @param classes option processor classes
+     * @return paths of the files written
+     * @throws IOException if a file cannot be written
+     * @throws GnoptCompiler.InvalidOptionProcessorException if any class is invalid
+     */
+    public static List<Path> write(final Path directory, final Collection<Class<?>> classes) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        for (final Class<?> classProcessor : classes) {
+            final Path file = directory.resolve(resourceName(classProcessor));
+            Files.createDirectories(file.getParent());
+            try (final OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                write(classProcessor, out);
+            }
+            files.add(file);
+        }
+        LOG.info("Wrote index for {} option processor class(es) to {}", classes.size(), directory);
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Compiles the given class, and writes its index.
+     *
+     * @param classProcessor option processor class, cannot be {@code null}
+     * @param out stream to write the index to; it is not closed
+     * @throws IOException if the index cannot be written, or the class files cannot be read
+     * @throws GnoptCompiler.InvalidOptionProcessorException if the classProcessor is invalid
+     */
+    public static void write(final Class<?> classProcessor, final OutputStream out) throws IOException {
+        final GnoptCompiler compiler = GnoptCompiler.compile(classProcessor);
+        final Map<String, Member> members = compiler.members();
+        final Set<String> concurrent = compiler.concurrent();
+
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeLong(shapeChecksum(classProcessor));
+        data.writeInt(members.size());
+        for (final Map.Entry<String, Member> member : members.entrySet()) {
+            data.writeUTF(member.getKey());
+            data.writeUTF(member.getValue().getName());
+            data.writeUTF(descriptor(member.getValue()));
+            data.writeBoolean(concurrent.contains(member.getKey()));
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads the index of the given class, if it is up to date.
+     *
+     * @param classProcessor option processor class, cannot be {@code null}
+     * @param in stream to read the index from; it is not closed
+     * @return compiled option processor, or empty if the index is not for
+     *      the current version of the class (or is not an index at all)
+     * @throws IOException if the index cannot be read, or the class files cannot be read
+     */
+    public static Optional<GnoptCompiler> read(final Class<?> classProcessor, final InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readShort() != VERSION) {
+            LOG.warn("Ignoring index of {}: not a version {} index", classProcessor, VERSION);
+            return Optional.empty();
+        }
+        if (data.readLong() != shapeChecksum(classProcessor)) {
+            LOG.warn("Ignoring index of {}: the class has changed since the index was written", classProcessor);
+            return Optional.empty();
+        }
+
+        final int count = data.readInt();
+        final List<String[]> options = new ArrayList<>(count);
+        final Set<String> concurrent = new HashSet<>();
+        for (int i = 0; i < count; ++i) {
+            final String[] option = { data.readUTF(), data.readUTF(), data.readUTF() };
+            options.add(option);
+            if (data.readBoolean()) {
+                concurrent.add(option[0]);
+            }
+        }
+        return Optional.of(GnoptCompiler.indexed(classProcessor, options, concurrent));
+    }
+
+    /**
+     * Loads the index of the given class from its classpath resource, if it exists and is up to date.
+     * Any failure to read it is logged.
+     *
+     * @param classProcessor option processor class, cannot be {@code null}
+     * @return compiled option processor, or empty if there is no usable index
+     */
+    public static Optional<GnoptCompiler> load(final Class<?> classProcessor) {
+        final ClassLoader loader = Objects.isNull(classProcessor.getClassLoader()) ? ClassLoader.getSystemClassLoader() : classProcessor.getClassLoader();
+        try (final InputStream in = loader.getResourceAsStream(resourceName(classProcessor))) {
+            if (Objects.isNull(in)) {
+                return Optional.empty();
+            }
+            final Optional<GnoptCompiler> compiler = read(classProcessor, new BufferedInputStream(in));
+            compiler.ifPresent(c -> LOG.trace("====> Loaded index of option-processor {}", classProcessor));
+            return compiler;
+        } catch (final IOException | RuntimeException e) {
+            LOG.warn("Ignoring index of {}: cannot read it", classProcessor, e);
+            return Optional.empty();
+        }
+    }
+
+
+
+    private static final Logger LOG = LoggerFactory.getLogger(GnoptIndex.class);
+    private static final int MAGIC = 0x474E4F50; // "GNOP"
+    private static final short VERSION = 3;
+
+    private GnoptIndex() {
+        throw new IllegalStateException("not intended to be instantiated");
+    }
+
+    /*
+     * The tool's own options: --output=directory, then class names (all of
+     * the arguments after --, if any, are class names).
+     */
+    private static final class Opts {
+        private static final String OUTPUT = Gnopt.OPT_PREFIX + "output";
+
+        private Path output = Paths.get(".");
+        private final List<String> classes = new ArrayList<>();
+
+        private static Opts parse(final String... args) {
+            final Opts opts = new Opts();
+            boolean options = true;
+            for (final String arg : args) {
+                if (options && arg.equals(Gnopt.OPT_PREFIX)) {
+                    options = false;
+                } else if (options && arg.equals(OUTPUT)) {
+                    opts.output = Paths.get(".");
+                } else if (options && arg.startsWith(OUTPUT + "=")) {
+                    opts.output = Paths.get(arg.substring(OUTPUT.length() + 1));
+                } else if (options && arg.startsWith(Gnopt.OPT_PREFIX)) {
+                    throw new IllegalArgumentException("invalid option: " + arg);
+                } else {
+                    opts.classes.add(arg);
+                }
+            }
+            return opts;
+        }
+    }
+
+    private static String resourceName(final Class<?> classProcessor) {
+        return RESOURCE_PREFIX + classProcessor.getName() + RESOURCE_SUFFIX;
+    }
+
+    /*
+     * The JVM descriptor of the method, or of the type of the field.
+     */
+    private static String descriptor(final Member member) {
+        if (member instanceof Method) {
+            final Method method = (Method)member;
+            return MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString();
+        }
+        final String getter = MethodType.methodType(((Field)member).getType()).toMethodDescriptorString();
+        return getter.substring(getter.indexOf(')') + 1);
+    }
+
+    /*
+     * Checksum of the class files of the class, its superclasses, and all their interfaces,
+     * except those of the platform (which only change with the JVM, and cannot add options).
+     * It combines the name of each class with the CRC-32 and size of its class file.
+     */
+    private static long shapeChecksum(final Class<?> classProcessor) throws IOException {
+        final Set<Class<?>> shape = new LinkedHashSet<>();
+        for (Class<?> c = classProcessor; Objects.nonNull(c); c = c.getSuperclass()) {
+            addShape(c, shape);
+        }
+        final CRC32 crc = new CRC32();
+        final ByteBuffer file = ByteBuffer.allocate(2 * Long.BYTES);
+        for (final Class<?> c : shape) {
+            crc.update(c.getName().getBytes(StandardCharsets.UTF_8));
+            final long[] checksum = classFileChecksum(c);
+            file.clear();
+            file.putLong(checksum[0]).putLong(checksum[1]).flip();
+            crc.update(file);
+        }
+        return crc.getValue();
+    }
+
+    /*
+     * CRC-32 and size of the class file. A jar file's directory already has them;
+     * otherwise (for example, in a directory), the class file is read.
+     */
+    private static long[] classFileChecksum(final Class<?> c) throws IOException {
+        final URL url = c.getResource("/" + c.getName().replace('.', '/') + ".class");
+        if (Objects.isNull(url)) {
+            throw new FileNotFoundException("class file of " + c);
+        }
+        final URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            final JarEntry entry = ((JarURLConnection)connection).getJarEntry();
+            if (0 <= entry.getCrc() && 0 <= entry.getSize()) {
+                return new long[] { entry.getCrc(), entry.getSize() };
+            }
+        }
+        try (final InputStream in = connection.getInputStream()) {
+            final byte[] bytes = in.readAllBytes();
+            final CRC32 crc = new CRC32();
+            crc.update(bytes);
+            return new long[] { crc.getValue(), bytes.length };
+        }
+    }
+
+    private static void addShape(final Class<?> c, final Set<Class<?>> shape) {
+        if (isPlatform(c) || !shape.add(c)) {
+            return;
+        }
+        for (final Class<?> i : c.getInterfaces()) {
+            addShape(i, shape);
+        }
+    }
+
+    private static boolean isPlatform(final Class<?> c) {
+        final ClassLoader loader = c.getClassLoader();
+        return Objects.isNull(loader) || loader.equals(ClassLoader.getPlatformClassLoader());
+    }
+}
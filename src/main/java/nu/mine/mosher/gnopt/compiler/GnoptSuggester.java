@@ -0,0 +1,212 @@
+package nu.mine.mosher.gnopt.compiler;
+
+
+
+import java.util.*;
+
+
+
+/**
+ * An immutable index of option names, for suggesting the names closest
+ * to a misspelled one ("did you mean ...?"), by Levenshtein distance.
+ *
+ * It is an inverted index of the bigrams (pairs of adjacent characters, with the
+ * start and end of the name counting as characters) of the (folded) names. Each edit
+ * changes at most two bigrams, so a name within distance {@code t} of the misspelled
+ * name must share all but {@code 2t} of its bigrams. Only the names that pass that
+ * count filter have their distance measured, and then only within the band of
+ * distance {@code t}, so a search never measures the distance to every name.
+ * A name too long to be close to any option is rejected at once, so even a huge,
+ * hostile argument cannot make a search slow.
+ *
+ * Build it only when it is first needed (that is, when an option is invalid),
+ * so that it costs nothing when all the options are valid.
+ */
+public final class GnoptSuggester {
+    /**
+     * Maximum number of suggestions returned by {@link GnoptSuggester#suggest(CharSequence)}.
+     */
+    public static final int MAX_SUGGESTIONS = 5;
+
+    /**
+     * Builds the index of the given option names.
+     *
+     * @param names option names, cannot be {@code null}; the name of the method for
+     *              non-option arguments ({@link GnoptCompiler#METHOD_NAME_FOR_UNNAMED_ARGS}) is ignored
+     * @return new index
+     */
+    public static GnoptSuggester of(final Collection<String> names) {
+        final SortedSet<String> keys = new TreeSet<>();
+        for (final String name : names) {
+            keys.add(OptionTrie.fold(name));
+        }
+        keys.remove(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS);
+        return new GnoptSuggester(keys.toArray(new String[0]));
+    }
+
+    /**
+     * Finds the option names closest to the given (invalid) name: those within
+     * an edit distance of 1 (for names of up to 4 characters) or 2 (for longer names).
+     * Hyphen-minus and underscore characters are treated as equivalent.
+     *
+     * @param name name of the option, cannot be {@code null}
+     * @return unmodifiable {@link List} of at most {@link GnoptSuggester#MAX_SUGGESTIONS} option names
+     *      (with underscores), closest first (and then in alphabetical order); or empty if none is close
+     */
+    public List<String> suggest(final CharSequence name) {
+        final int tolerance = name.length() <= 4 ? 1 : 2;
+        if (this.keys.length == 0 || this.maxLength + tolerance < name.length()) {
+            return List.of();
+        }
+
+        final char[] query = new char[name.length()];
+        for (int i = 0; i < query.length; ++i) {
+            query[i] = OptionTrie.fold(name.charAt(i));
+        }
+        final int[] grams = bigrams(query);
+        final int threshold = grams.length - 2 * tolerance;
+
+        final int[] shared = new int[this.keys.length];
+        for (final int gram : grams) {
+            for (final int id : this.postings.getOrDefault(gram, NO_IDS)) {
+                ++shared[id];
+            }
+        }
+
+        final int[][] rows = new int[2][this.maxLength + 2];
+        final List<List<String>> found = new ArrayList<>(tolerance + 1); // by distance
+        for (int d = 0; d <= tolerance; ++d) {
+            found.add(new ArrayList<>());
+        }
+        for (int id = 0; id < this.keys.length; ++id) {
+            if (threshold <= shared[id] && this.gramCounts[id] - 2 * tolerance <= shared[id]) {
+                final int d = distance(query, this.chars[id], tolerance, rows);
+                if (d <= tolerance) {
+                    found.get(d).add(this.keys[id]);
+                }
+            }
+        }
+
+        final List<String> names = new ArrayList<>();
+        found.forEach(names::addAll);
+        return Collections.unmodifiableList(names.subList(0, Math.min(names.size(), MAX_SUGGESTIONS)));
+    }
+
+
+
+    private static final int[] NO_IDS = new int[0];
+    private static final char END = '\0';
+
+    /** Names, sorted (so ids are in alphabetical order). */
+    private final String[] keys;
+    private final char[][] chars;
+    /** Number of distinct bigrams of each name. */
+    private final int[] gramCounts;
+    /** Bigram to the ids of the names that contain it (in increasing order). */
+    private final Map<Integer, int[]> postings;
+    private final int maxLength;
+
+    private GnoptSuggester(final String[] keys) {
+        this.keys = keys;
+        this.chars = new char[keys.length][];
+        this.gramCounts = new int[keys.length];
+
+        // each (bigram, id) pair packed into a long, so that sorting them groups them by bigram, then id
+        final int[][] grams = new int[keys.length][];
+        int pairs = 0;
+        int max = 0;
+        for (int id = 0; id < keys.length; ++id) {
+            this.chars[id] = keys[id].toCharArray();
+            max = Math.max(max, keys[id].length());
+            grams[id] = bigrams(this.chars[id]);
+            this.gramCounts[id] = grams[id].length;
+            pairs += grams[id].length;
+        }
+        this.maxLength = max;
+
+        final long[] packed = new long[pairs];
+        int p = 0;
+        for (int id = 0; id < keys.length; ++id) {
+            for (final int gram : grams[id]) {
+                packed[p++] = (long)gram << 32 | id;
+            }
+        }
+        Arrays.sort(packed);
+
+        this.postings = new HashMap<>();
+        for (int start = 0; start < packed.length; ) {
+            final int gram = (int)(packed[start] >>> 32);
+            int end = start + 1;
+            while (end < packed.length && (int)(packed[end] >>> 32) == gram) {
+                ++end;
+            }
+            final int[] ids = new int[end - start];
+            for (int i = start; i < end; ++i) {
+                ids[i - start] = (int)packed[i];
+            }
+            this.postings.put(gram, ids);
+            start = end;
+        }
+    }
+
+    /*
+     * The distinct bigrams of the name, with the start and the end of the name counting as characters,
+     * each packed into an int.
+     */
+    private static int[] bigrams(final char[] name) {
+        final int[] grams = new int[name.length + 1];
+        char prev = END;
+        for (int i = 0; i <= name.length; ++i) {
+            final char c = i < name.length ? name[i] : END;
+            grams[i] = prev << 16 | c;
+            prev = c;
+        }
+        Arrays.sort(grams);
+        int n = 0;
+        for (int i = 0; i < grams.length; ++i) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[n++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, n);
+    }
+
+    /*
+     * Levenshtein distance, or cap + 1 if it is more than cap, using two rows (each at least
+     * b.length + 2 long) of the usual table. Only the diagonal band of cells within cap of
+     * the main diagonal can be at most cap, so only those are computed; and the computation
+     * stops as soon as a whole row exceeds cap.
+     */
+    private static int distance(final char[] a, final char[] b, final int cap, final int[][] rows) {
+        final int over = cap + 1;
+        if (cap < Math.abs(a.length - b.length)) {
+            return over;
+        }
+        int[] prev = rows[0];
+        int[] curr = rows[1];
+        for (int j = 0; j <= b.length; ++j) {
+            prev[j] = Math.min(j, over);
+        }
+        prev[b.length + 1] = over;
+        for (int i = 1; i <= a.length; ++i) {
+            final int lo = Math.max(1, i - cap);
+            final int hi = Math.min(b.length, i + cap);
+            curr[lo - 1] = lo == 1 ? Math.min(i, over) : over;
+            int min = curr[lo - 1];
+            final char c = a[i - 1];
+            for (int j = lo; j <= hi; ++j) {
+                final int substitute = prev[j - 1] + (c == b[j - 1] ? 0 : 1);
+                curr[j] = Math.min(over, Math.min(substitute, Math.min(prev[j], curr[j - 1]) + 1));
+                min = Math.min(min, curr[j]);
+            }
+            curr[hi + 1] = over;
+            if (over <= min) {
+                return over;
+            }
+            final int[] swap = prev;
+            prev = curr;
+            curr = swap;
+        }
+        return prev[b.length];
+    }
+}
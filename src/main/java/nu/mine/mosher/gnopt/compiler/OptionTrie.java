@@ -0,0 +1,206 @@
+package nu.mine.mosher.gnopt.compiler;
+
+
+
+import java.util.*;
+
+
+
+/**
+ * An immutable character trie of option names, stored in parallel arrays.
+ * It can be searched with a region of a larger string (such as a whole
+ * command-line argument), without allocating anything. Hyphen-minus and
+ * underscore are treated as the same character while matching, so option
+ * names never need to be copied to be normalized.
+ *
+ * Node 0 is the root. The children of node {@code n} are the edges
+ * {@code first[n]} (inclusive) to {@code first[n+1]} (exclusive), sorted
+ * by {@code edgeChar}; each edge leads to node {@code edgeNode}.
+ * Nodes are numbered depth-first, so every node's descendants have higher numbers.
+ * For GNU-style abbreviations, {@code unique[n]} is the only node in the subtree of
+ * node {@code n} (including {@code n} itself) that ends a name, or {@code NONE}, or {@code MANY}.
+ */
+final class OptionTrie<V> {
+    private final int[] first;
+    private final char[] edgeChar;
+    private final int[] edgeNode;
+    private final Object[] values;
+    private final String[] names;
+    private final int[] unique;
+
+    /**
+     * Builds a trie from the given option names and values.
+     * Names that are the same after folding replace earlier ones,
+     * in the iteration order of the given map.
+     */
+    OptionTrie(final Map<String, V> map) {
+        final SortedMap<String, V> sorted = new TreeMap<>();
+        map.forEach((k, v) -> sorted.put(fold(k), Objects.requireNonNull(v)));
+        final List<String> keys = new ArrayList<>(sorted.keySet());
+
+        final Builder builder = new Builder();
+        builder.build(keys, sorted, 0, keys.size(), 0, 0);
+
+        final int nodes = builder.values.size();
+        this.values = builder.values.toArray();
+        this.names = builder.names.toArray(new String[0]);
+        this.first = new int[nodes + 1];
+        this.edgeChar = new char[nodes - 1];
+        this.edgeNode = new int[nodes - 1];
+
+        // every node except the root is the target of exactly one edge; group edges by parent
+        final int[] counts = new int[nodes + 1];
+        for (int child = 1; child < nodes; ++child) {
+            ++counts[builder.parents.get(child) + 1];
+        }
+        for (int n = 0; n < nodes; ++n) {
+            this.first[n + 1] = this.first[n] + counts[n + 1];
+        }
+        final int[] next = Arrays.copyOf(this.first, nodes);
+        for (int child = 1; child < nodes; ++child) {
+            final int e = next[builder.parents.get(child)]++;
+            this.edgeChar[e] = builder.chars.get(child);
+            this.edgeNode[e] = child;
+        }
+
+        this.unique = new int[nodes];
+        for (int n = 0; n < nodes; ++n) {
+            this.unique[n] = Objects.isNull(this.names[n]) ? NONE : n;
+        }
+        for (int child = nodes - 1; 0 < child; --child) {
+            final int parent = builder.parents.get(child);
+            if (this.unique[child] != NONE) {
+                this.unique[parent] = this.unique[parent] == NONE ? this.unique[child] : MANY;
+            }
+        }
+    }
+
+    /**
+     * Looks up an option name.
+     * @return the value, or {@code null} if not found
+     */
+    V get(final String key) {
+        return get(key, 0, key.length());
+    }
+
+    /**
+     * Looks up the option name in {@code s} from index {@code from} (inclusive)
+     * to index {@code to} (exclusive).
+     * @return the value, or {@code null} if not found
+     */
+    @SuppressWarnings("unchecked")
+    V get(final CharSequence s, final int from, final int to) {
+        final int node = find(s, from, to);
+        return node < 0 ? null : (V)this.values[node];
+    }
+
+    /**
+     * Finds the option names that begin with the (folded) region of {@code s}, as a GNU-style abbreviation.
+     * If the region is a whole option name, only that name is returned. The search takes time
+     * proportional to the length of the region (plus, only if the region is ambiguous,
+     * the number of candidates), whatever the number of names.
+     * @return the (folded) names, sorted, or empty if there are none
+     */
+    List<String> complete(final CharSequence s, final int from, final int to) {
+        final int node = find(s, from, to);
+        if (node < 0 || this.unique[node] == NONE) {
+            return List.of();
+        }
+        if (Objects.nonNull(this.names[node])) {
+            return List.of(this.names[node]);
+        }
+        if (this.unique[node] != MANY) {
+            return List.of(this.names[this.unique[node]]);
+        }
+        final List<String> all = new ArrayList<>();
+        collect(node, all);
+        return Collections.unmodifiableList(all);
+    }
+
+    static char fold(final char c) {
+        return c == '-' ? '_' : c;
+    }
+
+    static String fold(final String s) {
+        return s.replace('-', '_');
+    }
+
+
+
+    private static final int NONE = -1;
+    private static final int MANY = -2;
+
+    private void collect(final int node, final List<String> into) {
+        if (Objects.nonNull(this.names[node])) {
+            into.add(this.names[node]);
+        }
+        for (int e = this.first[node]; e < this.first[node + 1]; ++e) {
+            collect(this.edgeNode[e], into);
+        }
+    }
+
+    private int find(final CharSequence s, final int from, final int to) {
+        int node = 0;
+        for (int i = from; i < to && node >= 0; ++i) {
+            node = child(node, fold(s.charAt(i)));
+        }
+        return node;
+    }
+
+    private int child(final int node, final char c) {
+        int lo = this.first[node];
+        int hi = this.first[node + 1] - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final char m = this.edgeChar[mid];
+            if (m < c) {
+                lo = mid + 1;
+            } else if (m > c) {
+                hi = mid - 1;
+            } else {
+                return this.edgeNode[mid];
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Builds nodes depth-first from a sorted list of keys.
+     * Each node records its parent, and the character on the edge from its parent.
+     */
+    private static final class Builder {
+        private final List<Object> values = new ArrayList<>();
+        private final List<Integer> parents = new ArrayList<>();
+        private final List<Character> chars = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+
+        private Builder() {
+            node(-1, '\0');
+        }
+
+        private int node(final int parent, final char c) {
+            this.values.add(null);
+            this.names.add(null);
+            this.parents.add(parent);
+            this.chars.add(c);
+            return this.values.size() - 1;
+        }
+
+        private <V> void build(final List<String> keys, final Map<String, V> map, int lo, final int hi, final int depth, final int node) {
+            if (lo < hi && keys.get(lo).length() == depth) {
+                this.values.set(node, map.get(keys.get(lo)));
+                this.names.set(node, keys.get(lo));
+                ++lo;
+            }
+            while (lo < hi) {
+                final char c = keys.get(lo).charAt(depth);
+                int end = lo + 1;
+                while (end < hi && keys.get(end).charAt(depth) == c) {
+                    ++end;
+                }
+                build(keys, map, lo, end, depth + 1, node(node, c));
+                lo = end;
+            }
+        }
+    }
+}
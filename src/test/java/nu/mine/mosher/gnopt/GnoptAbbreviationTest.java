@@ -0,0 +1,83 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptAbbreviationTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        public static Map<String, String> GNOPT = Map.of("draw", "__draw");
+        final List<String> log = new ArrayList<>();
+
+        public void verbose() {
+            this.log.add("verbose");
+        }
+
+        public void verb(final Optional<String> value) {
+            this.log.add("verb=" + value.orElse(""));
+        }
+
+        public void dry_run() {
+            this.log.add("dry_run");
+        }
+
+        public void __draw(final Optional<String> value) {
+            this.log.add("draw=" + value.orElse(""));
+        }
+
+        public void __(final Optional<String> value) {
+            this.log.add("arg=" + value.get());
+        }
+    }
+
+    private static final GnoptParser<Opts> PARSER = GnoptParser.of(Opts.class).withAbbreviations(true);
+
+    @Test
+    void nominal() throws Gnopt.InvalidOption {
+        assertEquals(List.of("verbose", "dry_run", "draw=x", "arg=y"), PARSER.parse("--verbo", "--dry", "--dra=x", "y").log);
+    }
+
+    @Test
+    void exactNameWins() throws Gnopt.InvalidOption {
+        assertEquals(List.of("verb=1", "verbose"), PARSER.parse("--verb=1", "--verbose").log);
+    }
+
+    @Test
+    void hyphens() throws Gnopt.InvalidOption {
+        assertEquals(List.of("dry_run"), PARSER.parse("--dry-").log);
+    }
+
+    @Test
+    void disabledByDefault() {
+        assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--verbo"));
+    }
+
+    @Test
+    void negAmbiguous() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> PARSER.parse("--dr"));
+        assertEquals("ambiguous option \"dr\" (could be: draw, dry_run)", e.getMessage());
+    }
+
+    @Test
+    void negUnknown() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> PARSER.parse("--x"));
+        assertEquals("invalid option \"x\"", e.getMessage());
+    }
+
+    @Test
+    void negEmptyName() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> PARSER.parse("--=1"));
+        assertEquals("invalid option (with no name)", e.getMessage());
+    }
+
+    @Test
+    void negNonOptionMethodIsNotAnAbbreviation() {
+        assertThrows(Gnopt.InvalidOption.class, () -> PARSER.parse("--_"));
+        assertThrows(Gnopt.InvalidOption.class, () -> PARSER.parse("--__"));
+        assertEquals(List.of(), GnoptCompiler.compile(Opts.class).complete("_", 0, 1));
+    }
+}
@@ -0,0 +1,128 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptAllocationTest {
+    private static final int ARGC = 100_000;
+    private static final int WARMUP = 30;
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        int flags;
+        int values;
+
+        public void verbose(final Optional<String> value) {
+            ++this.flags;
+        }
+
+        public void dry_run(final Optional<String> value) {
+            ++this.flags;
+        }
+
+        public void name(final Optional<String> value) {
+            ++this.values;
+        }
+
+        public void quiet() {
+            ++this.flags;
+        }
+
+        public void port(final int port) {
+            ++this.values;
+        }
+    }
+
+    /*
+     * The measurements run in a child JVM, so that Gnopt's logger can be created at debug
+     * level there (per-argument trace logging would dominate the measurements), without
+     * changing the log level of any other test.
+     */
+    public static class Measure {
+        public static void main(final String... args) throws Throwable {
+            final String[] flags = new String[ARGC];
+            final String[] values = new String[ARGC];
+            final String[] primitives = new String[ARGC];
+            for (int i = 0; i < ARGC; ++i) {
+                flags[i] = i % 2 == 0 ? "--verbose" : "--dry-run";
+                values[i] = "--name=value";
+                primitives[i] = i % 2 == 0 ? "--quiet" : "--port=8080";
+            }
+            System.out.println(RESULT + "flags=" + allocatedBy(flags));
+            System.out.println(RESULT + "values=" + allocatedBy(values));
+            System.out.println(RESULT + "primitives=" + allocatedBy(primitives));
+        }
+    }
+
+    @Test
+    void flagsDoNotAllocate() throws Throwable {
+        final long bytes = measured("flags");
+        assertTrue(bytes < ARGC, "allocated " + bytes + " bytes for " + ARGC + " flags");
+    }
+
+    @Test
+    void valuesAllocateOnlyTheValue() throws Throwable {
+        final long bytes = measured("values");
+        // a substring "value" (String plus its byte array) and an Optional, per argument
+        assertTrue(bytes < 100L * ARGC, "allocated " + bytes + " bytes for " + ARGC + " values");
+    }
+
+    @Test
+    void primitivesDoNotAllocate() throws Throwable {
+        final long bytes = measured("primitives");
+        assertTrue(bytes < ARGC, "allocated " + bytes + " bytes for " + ARGC + " primitive options");
+    }
+
+
+
+    private static final String RESULT = "allocated ";
+    private static Map<String, Long> measurements;
+
+    private static synchronized long measured(final String name) throws Throwable {
+        if (Objects.isNull(measurements)) {
+            final Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Dorg.slf4j.simpleLogger.log." + Gnopt.class.getName() + "=debug",
+                "-cp", System.getProperty("java.class.path"),
+                Measure.class.getName())
+                .redirectErrorStream(true)
+                .start();
+            final List<String> lines;
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                lines = reader.lines().collect(Collectors.toList());
+            }
+            assertEquals(0, process.waitFor(), String.join("\n", lines));
+            final Map<String, Long> map = new HashMap<>();
+            for (final String line : lines) {
+                if (line.startsWith(RESULT)) {
+                    final String[] result = line.substring(RESULT.length()).split("=");
+                    map.put(result[0], Long.parseLong(result[1]));
+                }
+            }
+            measurements = map;
+        }
+        return Objects.requireNonNull(measurements.get(name), name);
+    }
+
+    private static long allocatedBy(final String[] args) throws Throwable {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; ++i) {
+            Gnopt.process(Opts.class, args);
+        }
+        final long before = threads.getThreadAllocatedBytes(thread);
+        final Opts opts = Gnopt.process(Opts.class, args);
+        final long after = threads.getThreadAllocatedBytes(thread);
+        if (opts.flags + opts.values != ARGC) {
+            throw new IllegalStateException("processed " + (opts.flags + opts.values) + " of " + ARGC + " arguments");
+        }
+        return after - before;
+    }
+}
@@ -0,0 +1,86 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptAsyncTest {
+    static final CountDownLatch STARTED = new CountDownLatch(1);
+    static final CountDownLatch RELEASE = new CountDownLatch(1);
+    static final AtomicInteger COUNTED = new AtomicInteger();
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        int port;
+        final List<String> args = new ArrayList<>();
+
+        public void port(final int port) {
+            this.port = port;
+        }
+
+        public void block() throws InterruptedException {
+            STARTED.countDown();
+            RELEASE.await(30L, TimeUnit.SECONDS);
+        }
+
+        public void count() {
+            COUNTED.incrementAndGet();
+        }
+
+        public void __(final Optional<String> value) {
+            this.args.add(value.get());
+        }
+    }
+
+    @Test
+    void nominal() throws Exception {
+        final Opts opts = Gnopt.processAsync(Opts.class, ForkJoinPool.commonPool(), "--port=80", "x").get(30L, TimeUnit.SECONDS);
+        assertEquals(80, opts.port);
+        assertEquals(List.of("x"), opts.args);
+        assertEquals(List.of(), Gnopt.processAsync(Opts.class, Runnable::run, (String[])null).get().args);
+    }
+
+    @Test
+    void negCompletesExceptionally() {
+        final CompletableFuture<Opts> future = Gnopt.processAsync(Opts.class, Runnable::run, "--port=x");
+        assertTrue(future.isCompletedExceptionally());
+        final ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertTrue(e.getCause() instanceof Gnopt.InvalidOption, String.valueOf(e.getCause()));
+    }
+
+    @Test
+    void negRejected() {
+        final CompletableFuture<Opts> future = Gnopt.processAsync(Opts.class, call -> { throw new RejectedExecutionException(); }, "--port=80");
+        final ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    void argsAreCopied() throws Exception {
+        final List<Runnable> calls = new ArrayList<>();
+        final String[] args = { "--port=80" };
+        final CompletableFuture<Opts> future = Gnopt.processAsync(Opts.class, calls::add, args);
+        args[0] = "--port=81";
+        calls.forEach(Runnable::run);
+        assertEquals(80, future.get().port);
+    }
+
+    @Test
+    void cancelledBetweenArguments() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CompletableFuture<Opts> future = Gnopt.processAsync(Opts.class, executor, "--block", "--count", "--count");
+            assertTrue(STARTED.await(30L, TimeUnit.SECONDS));
+            assertTrue(future.cancel(false));
+            RELEASE.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30L, TimeUnit.SECONDS));
+        }
+        assertEquals(0, COUNTED.get());
+    }
+}
@@ -0,0 +1,76 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptBatchTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        String id = "";
+
+        public void id(final Optional<String> value) {
+            this.id = value.orElse("");
+        }
+    }
+
+    private static List<String[]> argvs(final int n) {
+        final List<String[]> argvs = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            argvs.add(i % 7 == 3 ? new String[] {"--bad"} : new String[] {"--id=" + i});
+        }
+        return argvs;
+    }
+
+    private static void assertInOrder(final List<GnoptParser.Result<Opts>> results, final int n) {
+        assertEquals(n, results.size());
+        for (int i = 0; i < n; ++i) {
+            final GnoptParser.Result<Opts> result = results.get(i);
+            if (i % 7 == 3) {
+                assertTrue(result.value().isEmpty());
+                assertTrue(result.error().isPresent());
+                assertThrows(Gnopt.InvalidOption.class, result::get);
+            } else {
+                assertTrue(result.error().isEmpty());
+                assertEquals(Integer.toString(i), result.value().orElseThrow().id);
+            }
+        }
+    }
+
+    @Test
+    void processAll() {
+        assertInOrder(Gnopt.processAll(Opts.class, argvs(10_000)), 10_000);
+    }
+
+    @Test
+    void executor() throws Throwable {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            assertInOrder(GnoptParser.of(Opts.class).parseAll(argvs(10_000), pool), 10_000);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void stream() {
+        final List<GnoptParser.Result<Opts>> results = GnoptParser.of(Opts.class).parseAll(argvs(1000).parallelStream()).collect(Collectors.toList());
+        assertInOrder(results, 1000);
+    }
+
+    @Test
+    void empty() {
+        assertTrue(Gnopt.processAll(Opts.class, List.of()).isEmpty());
+    }
+
+    @Test
+    void nullArgv() {
+        final List<String[]> argvs = new ArrayList<>();
+        argvs.add(null);
+        assertEquals("", Gnopt.processAll(Opts.class, argvs).get(0).value().orElseThrow().id);
+    }
+}
@@ -0,0 +1,73 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import nu.mine.mosher.gnopt.compiler.GnoptCompilerCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptCompilerCacheTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Nominal {
+        int flag;
+        public void flag(final Optional<String> value) {
+            ++this.flag;
+        }
+    }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Bad {
+        public String foo() {
+            return "junk";
+        }
+    }
+
+    @Test
+    void nominal() {
+        final GnoptCompiler first = GnoptCompilerCache.get(Nominal.class);
+        final GnoptCompiler second = GnoptCompilerCache.get(Nominal.class);
+        assertSame(first, second);
+    }
+
+    @Test
+    void evict() {
+        final GnoptCompiler first = GnoptCompilerCache.get(Nominal.class);
+        GnoptCompilerCache.evict(Nominal.class);
+        final GnoptCompiler second = GnoptCompilerCache.get(Nominal.class);
+        assertNotSame(first, second);
+        assertTrue(second.processor("flag").isPresent());
+    }
+
+    @Test
+    void clear() {
+        final GnoptCompiler first = GnoptCompilerCache.get(Nominal.class);
+        GnoptCompilerCache.clear();
+        assertNotSame(first, GnoptCompilerCache.get(Nominal.class));
+    }
+
+    @Test
+    void disabled() {
+        try {
+            GnoptCompilerCache.setEnabled(false);
+            assertFalse(GnoptCompilerCache.isEnabled());
+            assertNotSame(GnoptCompilerCache.get(Nominal.class), GnoptCompilerCache.get(Nominal.class));
+        } finally {
+            GnoptCompilerCache.setEnabled(true);
+        }
+        assertSame(GnoptCompilerCache.get(Nominal.class), GnoptCompilerCache.get(Nominal.class));
+    }
+
+    @Test
+    void processUsesCache() throws Throwable {
+        assertEquals(1, Gnopt.process(Nominal.class, "--flag").flag);
+        assertEquals(2, Gnopt.process(Nominal.class, "--flag", "--flag").flag);
+    }
+
+    @Test
+    void negFailureIsNotCached() {
+        assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompilerCache.get(Bad.class));
+        assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompilerCache.get(Bad.class));
+    }
+}
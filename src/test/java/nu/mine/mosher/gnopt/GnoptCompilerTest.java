@@ -49,6 +49,61 @@ class GnoptCompilerTest {
         );
     }
 
+    @Test
+    void nominalHandles() {
+        final GnoptCompiler uut = GnoptCompiler.compile(Nominal.class);
+        assertAll(
+            () -> assertEquals(GnoptCompiler.HANDLE_TYPE, uut.handle("flag").orElseThrow().type()),
+            () -> assertEquals(GnoptCompiler.HANDLE_TYPE, uut.handle("value").orElseThrow().type()),
+            () -> assertTrue(uut.handle(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS).isPresent()),
+            () -> assertTrue(uut.handle("privateMethodNotSeenByCompiler").isEmpty())
+        );
+    }
+
+    @SuppressWarnings("unused")
+    public static class Arities {
+        public void flag() {
+        }
+
+        public void verbose(final boolean on) {
+        }
+
+        public void port(final int port) {
+        }
+    }
+
+    @Test
+    void arities() {
+        final GnoptCompiler uut = GnoptCompiler.compile(Arities.class);
+        assertAll(
+            () -> assertEquals(Optional.of(GnoptCompiler.Arity.NONE), uut.arity("flag")),
+            () -> assertEquals(Optional.of(GnoptCompiler.Arity.OPTIONAL), uut.arity("verbose")),
+            () -> assertEquals(Optional.of(GnoptCompiler.Arity.REQUIRED), uut.arity("port")),
+            () -> assertEquals(Optional.empty(), uut.arity("nothing")),
+            () -> assertEquals(GnoptCompiler.VALUE_HANDLE_TYPE, uut.valueHandle("--port=1", 2, 6).type()),
+            () -> assertEquals(GnoptCompiler.HANDLE_TYPE, uut.handle("flag").orElseThrow().type())
+        );
+    }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Hyphenated {
+        public void dry_run(final Optional<String> value) {
+        }
+    }
+
+    @Test
+    void hyphenatedRegionLookup() {
+        final GnoptCompiler uut = GnoptCompiler.compile(Hyphenated.class);
+        final String arg = "--dry-run=yes";
+        assertAll(
+            () -> assertTrue(uut.processor("dry-run").isPresent()),
+            () -> assertTrue(uut.handle("dry_run").isPresent()),
+            () -> assertNotNull(uut.handle(arg, 2, 9)),
+            () -> assertNull(uut.handle(arg, 2, 8)),
+            () -> assertNull(uut.handle(arg, 0, 9))
+        );
+    }
+
 
     @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
     public static class Inherited extends Nominal {
@@ -132,8 +187,9 @@ class GnoptCompilerTest {
     }
 
     @Test
-    void negIntParameters() {
-        bad(() -> GnoptCompiler.compile(IntParameter.class));
+    void intParameter() {
+        // int is a supported (converted) parameter type
+        assertTrue(GnoptCompiler.compile(IntParameter.class).processor("foo").isPresent());
     }
 
     @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
@@ -165,8 +221,9 @@ class GnoptCompilerTest {
     }
 
     @Test
-    void negArgProcWithInt() {
-        bad(() -> GnoptCompiler.compile(ArgProcWithInt.class));
+    void argProcWithInt() {
+        // int is a supported (converted) parameter type
+        assertTrue(GnoptCompiler.compile(ArgProcWithInt.class).processor(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS).isPresent());
     }
 
     @Test
@@ -320,4 +377,60 @@ class GnoptCompilerTest {
         // TODO: handle this error the same way as other "requirements", instead of throwing an exception
         assertThrows(RuntimeException.class, () -> GnoptCompiler.compile(MappingMethodDoesNotExist.class));
     }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class MappingMethodIsOverloaded {
+        public static Map<String, String> GNOPT = Map.of("void", "__v");
+        public void __v() {
+        }
+        public void __v(final Optional<String> value) {
+        }
+    }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class OptionMethodIsOverloaded {
+        public void port(final int port) {
+        }
+        public void port(final Optional<String> port) {
+        }
+    }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class MappingDuplicatesMethod {
+        public static Map<String, String> GNOPT = Map.of("flag", "__f");
+        public void flag() {
+        }
+        public void __f() {
+        }
+    }
+
+    @Test
+    void negDuplicateOptionName() {
+        for (final Class<?> cls : List.of(OptionMethodIsOverloaded.class, MappingDuplicatesMethod.class)) {
+            assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compile(cls), cls.getName());
+            assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compileLazily(cls), cls.getName());
+        }
+    }
+
+    public interface Generic<T> {
+        void value(T value);
+    }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class BridgedMethod implements Generic<Optional<String>> {
+        @Override
+        public void value(final Optional<String> value) {
+        }
+    }
+
+    @Test
+    void bridgeMethodIsNotADuplicate() {
+        assertTrue(GnoptCompiler.compile(BridgedMethod.class).processor("value").isPresent());
+    }
+
+    @Test
+    void negMappedMethodIsOverloaded() {
+        assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compile(MappingMethodIsOverloaded.class));
+        assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compileLazily(MappingMethodIsOverloaded.class));
+    }
 }
@@ -0,0 +1,130 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import nu.mine.mosher.gnopt.compiler.GnoptIndex;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptConcurrentTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final List<String> sequence = Collections.synchronizedList(new ArrayList<>());
+        volatile String catalog;
+        volatile String schema;
+        volatile int port;
+
+        @GnoptConcurrent
+        public void catalog(final Optional<String> value) throws Exception {
+            this.barrier.await(30L, TimeUnit.SECONDS);
+            this.catalog = value.orElse("");
+        }
+
+        @GnoptConcurrent
+        public void schema(final Optional<String> value) throws Exception {
+            this.barrier.await(30L, TimeUnit.SECONDS);
+            this.schema = value.orElse("");
+        }
+
+        @GnoptConcurrent
+        public void port(final int port) throws InterruptedException {
+            Thread.sleep(50L);
+            this.port = port;
+        }
+
+        public void step(final Optional<String> value) {
+            this.sequence.add(value.orElse(""));
+        }
+    }
+
+    @Test
+    void independentMethodsRunConcurrently() throws Gnopt.InvalidOption {
+        final Opts opts = Gnopt.process(Opts.class, "--step=1", "--catalog=c", "--step=2", "--schema=s", "--step=3");
+        assertEquals("c", opts.catalog);
+        assertEquals("s", opts.schema);
+        assertEquals(List.of("1", "2", "3"), opts.sequence);
+    }
+
+    @Test
+    void joinedBeforeReturning() throws Gnopt.InvalidOption {
+        assertEquals(8080, Gnopt.process(Opts.class, "--port=8080").port);
+    }
+
+    @Test
+    void joinedWhenReadingArgumentsFails() {
+        final Iterator<String> args = new Iterator<>() {
+            private boolean first = true;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (this.first) {
+                    this.first = false;
+                    return "--port=8080";
+                }
+                throw new UncheckedIOException(new IOException("cannot read arguments"));
+            }
+        };
+        final Opts opts = new Opts();
+        assertThrows(UncheckedIOException.class, () -> GnoptParser.of(Opts.class).parseInto(opts, args));
+        assertEquals(8080, opts.port);
+    }
+
+    @Test
+    void customExecutor() throws Gnopt.InvalidOption {
+        final AtomicInteger calls = new AtomicInteger();
+        final Executor executor = call -> {
+            calls.incrementAndGet();
+            call.run();
+        };
+        final Opts opts = GnoptParser.of(Opts.class).withExecutor(executor).parse("--port=1", "--step=x", "--port=2");
+        assertEquals(2, calls.get());
+        assertEquals(2, opts.port);
+    }
+
+    @Test
+    void negFailuresAreCombined() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--port=x", "--port=y", "--nope"));
+        assertTrue(e.getMessage().startsWith("3 options failed: "), e.getMessage());
+        assertTrue(e.getMessage().contains("invalid option \"nope\""), e.getMessage());
+        assertTrue(e.getMessage().contains("\"x\" for option \"port\""), e.getMessage());
+        assertEquals(3, e.getSuppressed().length);
+    }
+
+    @Test
+    void negSingleFailureIsNotWrapped() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--port=x", "--port=1"));
+        assertTrue(e.getMessage().startsWith("invalid value"), e.getMessage());
+        assertTrue(e.getMessage().endsWith("for option \"port\""), e.getMessage());
+    }
+
+    @Test
+    void compiler() {
+        final GnoptCompiler uut = GnoptCompiler.compile(Opts.class);
+        assertTrue(uut.hasConcurrent());
+        assertTrue(uut.isConcurrent("--catalog", 2, 9));
+        assertFalse(uut.isConcurrent("--step", 2, 6));
+        assertFalse(uut.isConcurrent("--none", 2, 6));
+        assertFalse(GnoptCompiler.compile(GnoptCompilerTest.Nominal.class).hasConcurrent());
+    }
+
+    @Test
+    void index() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GnoptIndex.write(Opts.class, out);
+        final GnoptCompiler uut = GnoptIndex.read(Opts.class, new ByteArrayInputStream(out.toByteArray())).orElseThrow();
+        assertTrue(uut.hasConcurrent());
+        assertTrue(uut.isConcurrent("--schema", 2, 8));
+        assertFalse(uut.isConcurrent("--step", 2, 6));
+    }
+}
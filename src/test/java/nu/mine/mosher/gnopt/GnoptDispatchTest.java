@@ -0,0 +1,64 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptDispatchTest {
+    @GnoptDispatch
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Generated {
+        public static Map<String, String> GNOPT = Map.of("void", "__v");
+        int verbose;
+        String voided = "";
+        final List<String> args = new ArrayList<>();
+
+        public void verbose(final Optional<String> value) {
+            ++this.verbose;
+        }
+
+        public void __(final Optional<String> value) {
+            this.args.add(value.get());
+        }
+
+        public void __v(final Optional<String> value) {
+            this.voided = value.orElse("");
+        }
+    }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class NotGenerated {
+        public void verbose(final Optional<String> value) {
+        }
+    }
+
+    @Test
+    void nominal() throws Throwable {
+        assertTrue(GnoptDispatchers.find(Generated.class).isPresent());
+        final Generated opts = Gnopt.process(Generated.class, "--verbose", "a", "--void=x", "--", "--verbose");
+        assertAll(
+            () -> assertEquals(1, opts.verbose),
+            () -> assertEquals("x", opts.voided),
+            () -> assertEquals(List.of("a", "--verbose"), opts.args)
+        );
+    }
+
+    @Test
+    void nameOfNested() {
+        assertEquals("nu.mine.mosher.gnopt.GnoptDispatchTest_GeneratedGnoptDispatcher", GnoptDispatchers.nameOf(Generated.class));
+    }
+
+    @Test
+    void notGenerated() throws Throwable {
+        assertTrue(GnoptDispatchers.find(NotGenerated.class).isEmpty());
+        assertNotNull(Gnopt.process(NotGenerated.class, "--verbose"));
+    }
+
+    @Test
+    void negInvalidOption() {
+        assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Generated.class, "--nonesuch"));
+        assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Generated.class, "--__v"));
+    }
+}
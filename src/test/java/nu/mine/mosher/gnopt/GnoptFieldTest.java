@@ -0,0 +1,113 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptFieldTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        @GnoptOption
+        public int port = 80;
+
+        @GnoptOption("dry-run")
+        public boolean dryRun;
+
+        @GnoptOption
+        public Path output;
+
+        @GnoptOption
+        public Optional<String> something = Optional.of("default");
+
+        public int notAnOption;
+
+        final List<String> args = new ArrayList<>();
+
+        public void __(final Optional<String> value) {
+            this.args.add(value.get());
+        }
+    }
+
+    @Test
+    void nominal() throws Gnopt.InvalidOption {
+        final Opts opts = Gnopt.process(Opts.class, "--port=8080", "--dry-run", "in.txt", "--output=x.txt", "--something=else");
+        assertAll(
+            () -> assertEquals(8080, opts.port),
+            () -> assertTrue(opts.dryRun),
+            () -> assertEquals(Paths.get("x.txt"), opts.output),
+            () -> assertEquals(Optional.of("else"), opts.something),
+            () -> assertEquals(List.of("in.txt"), opts.args)
+        );
+    }
+
+    @Test
+    void defaults() throws Gnopt.InvalidOption {
+        final Opts opts = Gnopt.process(Opts.class);
+        assertEquals(80, opts.port);
+        assertFalse(opts.dryRun);
+        assertEquals(Optional.of("default"), opts.something);
+    }
+
+    @Test
+    void compiled() {
+        final GnoptCompiler uut = GnoptCompiler.compile(Opts.class);
+        assertAll(
+            () -> assertEquals(Set.of("port", "dry-run", "output", "something"), uut.fields().keySet()),
+            () -> assertTrue(uut.handle("dry_run").isPresent()),
+            () -> assertTrue(uut.processor("port").isEmpty()),
+            () -> assertEquals(Optional.of(GnoptCompiler.Arity.REQUIRED), uut.arity("port"))
+        );
+    }
+
+    @Test
+    void negNotAnOption() {
+        assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--not-an-option=1"));
+    }
+
+    @Test
+    void negBadValue() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--port=x"));
+        assertTrue(e.getMessage().contains("\"port\""), e.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    public static class FinalField {
+        @GnoptOption
+        public final int port = 80;
+    }
+
+    @SuppressWarnings("unused")
+    public static class StaticField {
+        @GnoptOption
+        public static int port;
+    }
+
+    @SuppressWarnings("unused")
+    public static class UnsupportedField {
+        @GnoptOption
+        public Random random;
+    }
+
+    @SuppressWarnings("unused")
+    public static class DuplicateName {
+        @GnoptOption
+        public int port;
+
+        public void port(final int port) {
+        }
+    }
+
+    @Test
+    void negInvalidFields() {
+        assertAll(
+            () -> assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compile(FinalField.class)),
+            () -> assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compile(StaticField.class)),
+            () -> assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compile(UnsupportedField.class)),
+            () -> assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compile(DuplicateName.class))
+        );
+    }
+}
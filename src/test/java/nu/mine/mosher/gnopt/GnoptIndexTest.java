@@ -0,0 +1,155 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import nu.mine.mosher.gnopt.compiler.GnoptIndex;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.jar.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptIndexTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Base {
+        String inherited = "";
+
+        public void inherited(final Optional<String> value) {
+            this.inherited = value.orElse("");
+        }
+    }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts extends Base {
+        public static Map<String, String> GNOPT = Map.of("void", "__v");
+        int port;
+        int verbose;
+        String v = "";
+        final List<String> args = new ArrayList<>();
+        @GnoptOption("max-size")
+        public long size;
+
+        public void port(final int port) {
+            this.port = port;
+        }
+
+        public void verbose() {
+            ++this.verbose;
+        }
+
+        public void __(final Optional<String> value) {
+            this.args.add(value.get());
+        }
+
+        public void __v(final Optional<String> value) {
+            this.v = value.get();
+        }
+    }
+
+    @Test
+    void roundTrip() throws Throwable {
+        final GnoptCompiler compiled = GnoptCompiler.compile(Opts.class);
+        final GnoptCompiler uut = GnoptIndex.read(Opts.class, new ByteArrayInputStream(index(Opts.class))).orElseThrow();
+
+        assertEquals(compiled.processors(), uut.processors());
+        assertEquals(compiled.fields(), uut.fields());
+        assertEquals(Optional.of(GnoptCompiler.Arity.NONE), uut.arity("verbose"));
+        assertEquals(Optional.of(GnoptCompiler.Arity.REQUIRED), uut.arity("port"));
+
+        final Opts opts = new Opts();
+        uut.handle("port").orElseThrow().invoke((Object)opts, Optional.of("80"));
+        uut.handle("void").orElseThrow().invoke((Object)opts, Optional.of("x"));
+        uut.handle("max_size").orElseThrow().invoke((Object)opts, Optional.of("7"));
+        uut.handle("inherited").orElseThrow().invoke((Object)opts, Optional.of("y"));
+        uut.handle(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS).orElseThrow().invoke((Object)opts, Optional.of("arg"));
+        assertEquals(80, opts.port);
+        assertEquals("x", opts.v);
+        assertEquals(7L, opts.size);
+        assertEquals("y", opts.inherited);
+        assertEquals(List.of("arg"), opts.args);
+        assertSame(uut, uut.validate());
+    }
+
+    @Test
+    void staleIndexIsIgnored() throws IOException {
+        final byte[] index = index(Opts.class);
+        assertTrue(GnoptIndex.read(Base.class, new ByteArrayInputStream(index)).isEmpty());
+    }
+
+    @Test
+    void classInJarHasSameChecksum() throws Throwable {
+        final Path jar = Files.createTempDirectory("gnopt-index").resolve("opts.jar");
+        try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (final Class<?> c : List.of(Base.class, Opts.class)) {
+                final String name = c.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new JarEntry(name));
+                try (final InputStream in = Objects.requireNonNull(c.getClassLoader().getResourceAsStream(name))) {
+                    in.transferTo(out);
+                }
+            }
+        }
+        try (final URLClassLoader loader = new URLClassLoader(new URL[] { jar.toUri().toURL() }, getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+                if (!name.startsWith(GnoptIndexTest.class.getName() + "$")) {
+                    return super.loadClass(name, resolve);
+                }
+                synchronized (getClassLoadingLock(name)) {
+                    final Class<?> loaded = findLoadedClass(name);
+                    return Objects.nonNull(loaded) ? loaded : findClass(name);
+                }
+            }
+
+            @Override
+            public URL getResource(final String name) {
+                final URL url = findResource(name);
+                return Objects.nonNull(url) ? url : super.getResource(name);
+            }
+        }) {
+            final Class<?> inJar = loader.loadClass(Opts.class.getName());
+            assertNotSame(Opts.class, inJar);
+            assertEquals("jar", inJar.getResource("/" + inJar.getName().replace('.', '/') + ".class").getProtocol());
+            assertArrayEquals(index(Opts.class), index(inJar));
+            assertTrue(GnoptIndex.read(inJar, new ByteArrayInputStream(index(Opts.class))).isPresent());
+        }
+    }
+
+    @Test
+    void notAnIndexIsIgnored() throws IOException {
+        assertTrue(GnoptIndex.read(Opts.class, new ByteArrayInputStream("not an index".getBytes())).isEmpty());
+    }
+
+    @Test
+    void negTruncated() throws IOException {
+        final byte[] index = index(Opts.class);
+        final byte[] truncated = Arrays.copyOf(index, index.length - 1);
+        assertThrows(EOFException.class, () -> GnoptIndex.read(Opts.class, new ByteArrayInputStream(truncated)));
+    }
+
+    @Test
+    void missingResourceIsIgnored() {
+        assertTrue(GnoptIndex.load(Opts.class).isEmpty());
+    }
+
+    @Test
+    void writesResource() throws Throwable {
+        final Path dir = Files.createTempDirectory("gnopt-index");
+        GnoptIndex.main("--output=" + dir, Opts.class.getName());
+        final Path file = dir.resolve(GnoptIndex.RESOURCE_PREFIX + Opts.class.getName() + GnoptIndex.RESOURCE_SUFFIX);
+        assertArrayEquals(index(Opts.class), Files.readAllBytes(file));
+    }
+
+    @Test
+    void negMainInvalidOption() {
+        assertThrows(IllegalArgumentException.class, () -> GnoptIndex.main("--outputs=x", Opts.class.getName()));
+    }
+
+    private static byte[] index(final Class<?> classProcessor) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GnoptIndex.write(classProcessor, out);
+        return out.toByteArray();
+    }
+}
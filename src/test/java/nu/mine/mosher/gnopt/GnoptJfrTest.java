@@ -0,0 +1,103 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompilerCache;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptJfrTest {
+    @SuppressWarnings("unused")
+    public static class Opts {
+        public void verbose() {
+        }
+
+        public void port(final int port) {
+        }
+    }
+
+    @Test
+    void recordsCompileAndDispatch() throws Throwable {
+        final Path file = Files.createTempFile("gnopt", ".jfr");
+        GnoptCompilerCache.evict(Opts.class);
+        try (final Recording recording = new Recording()) {
+            recording.enable(GnoptCompileEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(GnoptDispatchEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            Gnopt.process(Opts.class, "--verbose", "--port=80");
+            assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--port=x"));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        final List<RecordedEvent> compiles = events.stream()
+            .filter(e -> e.getEventType().getName().equals("nu.mine.mosher.gnopt.Compile"))
+            .collect(Collectors.toList());
+        assertEquals(1, compiles.size());
+        assertEquals(Opts.class.getName(), compiles.get(0).getClass("optionProcessor").getName());
+        assertEquals(2, compiles.get(0).getInt("methods"));
+        assertTrue(compiles.get(0).getBoolean("success"));
+
+        final List<String> dispatches = events.stream()
+            .filter(e -> e.getEventType().getName().equals("nu.mine.mosher.gnopt.Dispatch"))
+            .map(e -> e.getString("option") + " " + e.getBoolean("success"))
+            .collect(Collectors.toList());
+        assertEquals(List.of("verbose true", "port true", "port false"), dispatches);
+        assertFalse(GnoptFlightRecorder.isRecording());
+    }
+
+    /*
+     * Run in its own JVM, with or without a recording started by -XX:StartFlightRecording.
+     */
+    public static final class Stock {
+        public static void main(final String... args) throws Throwable {
+            GnoptCompilerCache.evict(Opts.class);
+            Gnopt.process(Opts.class, "--verbose", "--port=80");
+            System.out.println(GnoptFlightRecorder.isRecording() ? "recording" : "not recording");
+        }
+    }
+
+    @Test
+    void stockRunLoadsOnlyTheRecorderClass() throws Throwable {
+        final List<String> lines = runStock("-Xlog:class+load=info");
+        assertTrue(lines.contains("not recording"), String.join("\n", lines));
+        assertTrue(lines.stream().anyMatch(line -> line.contains(Opts.class.getName())), "class loading was not logged");
+        assertEquals(List.of("jdk.jfr.FlightRecorder"), lines.stream()
+            .filter(line -> line.contains(" jdk.jfr."))
+            .map(line -> line.substring(line.indexOf(" jdk.jfr.") + 1).split(" ")[0])
+            .collect(Collectors.toList()));
+    }
+
+    @Test
+    void startupRecordingIncludesEventsWithoutSetup() throws Throwable {
+        final Path file = Files.createTempFile("gnopt", ".jfr");
+        final List<String> lines = runStock("-XX:StartFlightRecording:filename=" + file);
+        assertTrue(lines.contains("recording"), String.join("\n", lines));
+        assertTrue(RecordingFile.readAllEvents(file).stream()
+            .anyMatch(e -> e.getEventType().getName().equals("nu.mine.mosher.gnopt.Compile")));
+    }
+
+    private static List<String> runStock(final String option) throws Throwable {
+        final Process process = new ProcessBuilder(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            option,
+            "-cp", System.getProperty("java.class.path"),
+            Stock.class.getName())
+            .redirectErrorStream(true)
+            .start();
+        final List<String> lines;
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+        assertEquals(0, process.waitFor(), String.join("\n", lines));
+        return lines;
+    }
+}
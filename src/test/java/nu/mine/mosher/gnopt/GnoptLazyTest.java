@@ -0,0 +1,88 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import nu.mine.mosher.gnopt.compiler.GnoptCompilerCache;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptLazyTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        int good;
+
+        public void good(final Optional<String> value) {
+            ++this.good;
+        }
+
+        public String bad(final Optional<String> value) {
+            return "";
+        }
+    }
+
+    @Test
+    void invalidMethodIsNotAnOption() {
+        assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compile(Opts.class));
+
+        final GnoptCompiler uut = GnoptCompiler.compileLazily(Opts.class);
+        assertFalse(uut.failure());
+        assertTrue(uut.handle("good").isPresent());
+        assertTrue(uut.handle("bad").isEmpty());
+        assertNull(uut.handle("--none", 2, 6));
+        assertEquals(Set.of("good"), uut.processors().keySet());
+        assertEquals(List.of(), uut.complete("b", 0, 1));
+        assertFalse(uut.suggest("bat").contains("bad"));
+    }
+
+    @Test
+    void sameOptionsAsEager() {
+        final GnoptCompiler lazy = GnoptCompiler.compileLazily(GnoptCompilerTest.Nominal.class);
+        final GnoptCompiler eager = GnoptCompiler.compile(GnoptCompilerTest.Nominal.class);
+        assertEquals(eager.complete("", 0, 0), lazy.complete("", 0, 0));
+        assertEquals(eager.processors(), lazy.processors());
+    }
+
+    @Test
+    void validate() {
+        assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compileLazily(Opts.class).validate());
+        final GnoptCompiler valid = GnoptCompiler.compileLazily(GnoptCompilerTest.Nominal.class);
+        assertSame(valid, valid.validate());
+        final GnoptCompiler eager = GnoptCompiler.compile(GnoptCompilerTest.Nominal.class);
+        assertSame(eager, eager.validate());
+    }
+
+    @Test
+    void resolvedOnceAcrossThreads() throws Throwable {
+        final GnoptCompiler uut = GnoptCompiler.compileLazily(GnoptCompilerTest.Nominal.class);
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<MethodHandle>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; ++i) {
+                futures.add(pool.submit(() -> uut.valueHandle("flag", 0, 4)));
+            }
+            final MethodHandle first = futures.get(0).get();
+            for (final Future<MethodHandle> f : futures) {
+                assertSame(first, f.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void lazyCache() throws Throwable {
+        GnoptCompilerCache.setLazy(true);
+        try {
+            assertTrue(GnoptCompilerCache.isLazy());
+            assertEquals(2, Gnopt.process(Opts.class, "--good", "--good").good);
+            assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--bad"));
+        } finally {
+            GnoptCompilerCache.setLazy(false);
+        }
+        assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> Gnopt.process(Opts.class, "--good"));
+    }
+}
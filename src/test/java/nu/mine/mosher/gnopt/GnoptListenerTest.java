@@ -0,0 +1,120 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import nu.mine.mosher.gnopt.compiler.GnoptCompilerCache;
+import org.junit.jupiter.api.Test;
+
+import javax.management.*;
+import javax.management.openmbean.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptListenerTest {
+    @SuppressWarnings("unused")
+    public static class Opts {
+        public void verbose() {
+        }
+
+        public void port(final int port) {
+        }
+    }
+
+    private static class Recorder implements GnoptListener {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void compileStarted(final Class<?> classProcessor) {
+            this.events.add("compileStarted " + classProcessor.getSimpleName());
+        }
+
+        @Override
+        public void compileFinished(final Class<?> classProcessor, final long nanos, final boolean success) {
+            this.events.add("compileFinished " + classProcessor.getSimpleName() + " " + success);
+        }
+
+        @Override
+        public void dispatched(final Class<?> classProcessor, final String name, final long nanos) {
+            assertTrue(0 <= nanos);
+            this.events.add("dispatched " + name);
+        }
+
+        @Override
+        public void failed(final Class<?> classProcessor, final String name, final Gnopt.InvalidOption failure) {
+            this.events.add("failed " + name);
+        }
+    }
+
+    @Test
+    void nominal() throws Throwable {
+        final Recorder recorder = new Recorder();
+        GnoptCompilerCache.evict(Opts.class);
+        GnoptListeners.register(recorder);
+        try {
+            Gnopt.process(Opts.class, "--verbose", "--port=80");
+            assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--port=x"));
+            assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptCompiler.compile(GnoptCompilerTest.NonVoidReturn.class));
+        } finally {
+            GnoptListeners.unregister(recorder);
+        }
+        assertEquals(List.of(
+            "compileStarted Opts", "compileFinished Opts true",
+            "dispatched verbose", "dispatched port",
+            "failed port",
+            "compileStarted NonVoidReturn", "compileFinished NonVoidReturn false"), recorder.events);
+        assertNull(GnoptListeners.current());
+    }
+
+    @Test
+    void listenerExceptionsAreIgnored() throws Throwable {
+        final GnoptListener bad = new GnoptListener() {
+            @Override
+            public void dispatched(final Class<?> classProcessor, final String name, final long nanos) {
+                throw new IllegalStateException("bad listener");
+            }
+        };
+        GnoptListeners.register(bad);
+        try {
+            Gnopt.process(Opts.class, "--verbose");
+        } finally {
+            GnoptListeners.unregister(bad);
+        }
+    }
+
+    @Test
+    void metrics() throws Throwable {
+        final GnoptMetrics metrics = GnoptMetrics.install();
+        try {
+            assertSame(metrics, GnoptMetrics.install());
+            metrics.reset();
+            Gnopt.process(Opts.class, "--verbose", "--verbose", "--port=80");
+            assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--port"));
+            assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--bogus1"));
+            assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--bogus2"));
+
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(GnoptMetrics.OBJECT_NAME);
+            assertEquals(3L, server.getAttribute(name, "Dispatches"));
+            assertEquals(3L, server.getAttribute(name, "Failures"));
+
+            final TabularData options = (TabularData)server.getAttribute(name, "Options");
+            final CompositeData verbose = (CompositeData)options.get(new Object[] { Opts.class.getName() + " --verbose" }).get("value");
+            assertEquals(2L, verbose.get("count"));
+            assertEquals(2L, Arrays.stream((long[])verbose.get("histogram")).sum());
+            assertTrue(0L < (long)verbose.get("p99Nanos"));
+            final CompositeData port = (CompositeData)options.get(new Object[] { Opts.class.getName() + " --port" }).get("value");
+            assertEquals(1L, port.get("count"));
+            assertEquals(1L, port.get("failures"));
+            assertNull(options.get(new Object[] { Opts.class.getName() + " --bogus1" }));
+            final CompositeData unknown = (CompositeData)options.get(new Object[] { Opts.class.getName() + " " + GnoptMetrics.UNKNOWN }).get("value");
+            assertEquals(0L, unknown.get("count"));
+            assertEquals(2L, unknown.get("failures"));
+            assertEquals(3, options.size());
+        } finally {
+            GnoptMetrics.uninstall();
+        }
+        assertNull(GnoptListeners.current());
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(GnoptMetrics.OBJECT_NAME)));
+    }
+}
@@ -0,0 +1,96 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptParserTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        int verbose;
+        final List<String> args = new ArrayList<>();
+
+        public void verbose(final Optional<String> value) {
+            ++this.verbose;
+        }
+
+        public void __(final Optional<String> value) {
+            this.args.add(value.get());
+        }
+    }
+
+    @Test
+    void nominal() throws Throwable {
+        final GnoptParser<Opts> uut = GnoptParser.of(Opts.class);
+        final Opts first = uut.parse("--verbose", "a");
+        final Opts second = uut.parse("b", "--verbose", "--verbose");
+        assertAll(
+            () -> assertNotSame(first, second),
+            () -> assertEquals(1, first.verbose),
+            () -> assertEquals(List.of("a"), first.args),
+            () -> assertEquals(2, second.verbose),
+            () -> assertEquals(List.of("b"), second.args)
+        );
+    }
+
+    @Test
+    void parseInto() throws Throwable {
+        final GnoptParser<Opts> uut = GnoptParser.of(Opts.class);
+        final Opts opts = new Opts();
+        uut.parseInto(opts, "--verbose");
+        uut.parseInto(opts, "--verbose", "x");
+        assertEquals(2, opts.verbose);
+        assertEquals(List.of("x"), opts.args);
+    }
+
+    @Test
+    void terminatorIsPerParse() throws Throwable {
+        final GnoptParser<Opts> uut = GnoptParser.of(Opts.class);
+        assertEquals(List.of("--verbose"), uut.parse("--", "--verbose").args);
+        assertEquals(1, uut.parse("--verbose").verbose);
+    }
+
+    @Test
+    void nil() throws Throwable {
+        final String[] nullArray = null;
+        final Opts opts = GnoptParser.of(Opts.class).parse(nullArray);
+        assertEquals(0, opts.verbose);
+        assertTrue(opts.args.isEmpty());
+    }
+
+    @Test
+    void concurrent() throws Throwable {
+        final GnoptParser<Opts> uut = GnoptParser.of(Opts.class);
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Opts>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; ++i) {
+                final String[] args = i % 2 == 0 ? new String[] {"--", "--verbose"} : new String[] {"--verbose", "arg"};
+                results.add(pool.submit(() -> uut.parse(args)));
+            }
+            for (int i = 0; i < results.size(); ++i) {
+                final Opts opts = results.get(i).get();
+                assertEquals(i % 2 == 0 ? 0 : 1, opts.verbose);
+                assertEquals(List.of(i % 2 == 0 ? "--verbose" : "arg"), opts.args);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void negInvalidProcessor() {
+        assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptParser.of(GnoptCompilerTest.NonVoidReturn.class));
+    }
+
+    @Test
+    void negInvalidOption() {
+        final GnoptParser<Opts> uut = GnoptParser.of(Opts.class);
+        assertThrows(Gnopt.InvalidOption.class, () -> uut.parse("--nonesuch"));
+        assertThrows(NullPointerException.class, () -> uut.parseInto(null, "--verbose"));
+    }
+}
@@ -0,0 +1,151 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.regex.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptReachabilityTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Base {
+        public void inherited(final Optional<String> value) {
+        }
+    }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts extends Base {
+        public static Map<String, String> GNOPT = Map.of("void", "__v");
+        public void flag(final Optional<String> value) {
+        }
+        public void __(final Optional<String> value) {
+        }
+        public void __v(final Optional<String> value) {
+        }
+        public void __hidden(final Optional<String> value) {
+        }
+    }
+
+    public enum Level {
+        LOW, HIGH
+    }
+
+    @SuppressWarnings("unused")
+    public static class Typed {
+        @GnoptOption
+        public Level threshold;
+        public void level(final Level level) {
+        }
+        public void count(final int count) {
+        }
+        public void timeout(final Duration timeout) {
+        }
+    }
+
+    private static final Pattern ENTRY = Pattern.compile("\"name\": \"([^\"]+)\",\\s*\"queryAllPublicMethods\": true,\\s*\"fields\": \\[([^]]*)],\\s*\"methods\": \\[([^\\[\\]]*(?:\\[[^]]*][^\\[\\]]*)*)]");
+    private static final Pattern METHOD = Pattern.compile("\\{\"name\": \"([^\"]+)\", \"parameterTypes\": \\[([^]]*)]}");
+
+    @Test
+    void coversEveryAcceptedMethod() {
+        final Map<String, Set<String>> registered = parse(GnoptReachability.reflectConfig(List.of(Opts.class, GnoptDispatchTest.Generated.class)));
+
+        for (final Class<?> classProcessor : List.of(Opts.class, GnoptDispatchTest.Generated.class)) {
+            assertTrue(registered.get(classProcessor.getName()).contains("<init>()"), "constructor of "+classProcessor);
+            for (final Method method : GnoptCompiler.compile(classProcessor).processors().values()) {
+                final Set<String> methods = registered.getOrDefault(method.getDeclaringClass().getName(), Set.of());
+                assertTrue(methods.contains(method.getName() + "(java.util.Optional)"), "method "+method);
+            }
+        }
+    }
+
+    @Test
+    void registersMappingFieldAndDispatcher() {
+        final String json = GnoptReachability.reflectConfig(List.of(Opts.class, GnoptDispatchTest.Generated.class));
+        assertTrue(json.contains("{\"name\": \"GNOPT\"}"));
+        assertTrue(parse(json).get(GnoptDispatchers.nameOf(GnoptDispatchTest.Generated.class)).contains("<init>()"));
+        assertFalse(parse(json).get(Opts.class.getName()).contains("__hidden(java.util.Optional)"));
+    }
+
+    @Test
+    void registersOptionFieldsForWriting() {
+        final String json = GnoptReachability.reflectConfig(List.of(GnoptFieldTest.Opts.class));
+        assertTrue(json.contains("{\"name\": \"port\", \"allowWrite\": true}"), json);
+        assertFalse(json.contains("notAnOption"), json);
+    }
+
+    @Test
+    void registersReflectiveLookupsOfTypedOptions() {
+        final Map<String, Set<String>> registered = parse(GnoptReachability.reflectConfig(List.of(Typed.class)));
+        assertEquals(Set.of("values()"), registered.get(Level.class.getName()));
+        assertEquals(Set.of("orElse(java.lang.Object)"), registered.get(Optional.class.getName()));
+        assertTrue(registered.get(Typed.class.getName()).containsAll(Set.of("level(" + Level.class.getName() + ")", "count(int)", "timeout(java.time.Duration)")));
+        assertFalse(registered.containsKey(Duration.class.getName()));
+    }
+
+    @Test
+    void libraryMetadataCoversEveryConverter() throws Throwable {
+        final String resource = "META-INF/native-image/nu.mine.mosher.gnopt/gnopt/" + GnoptReachability.FILE_NAME;
+        final String json;
+        try (final InputStream in = Objects.requireNonNull(GnoptReachability.class.getClassLoader().getResourceAsStream(resource), resource)) {
+            json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        final Set<String> registered = new HashSet<>();
+        final Matcher method = METHOD.matcher(json);
+        while (method.find()) {
+            registered.add(method.group(1) + "(" + method.group(2).replace("\"", "") + ")");
+        }
+
+        final Class<?> converters = Class.forName(GnoptCompiler.class.getPackageName() + ".Converters");
+        assertTrue(json.contains("\"name\": \"" + converters.getName() + "\""), json);
+        int count = 0;
+        for (final Method m : converters.getDeclaredMethods()) {
+            final Class<?>[] params = m.getParameterTypes();
+            final boolean converter = m.getName().equals("noValue") || m.getName().startsWith("to");
+            if (converter && Modifier.isStatic(m.getModifiers()) && 2 <= params.length && params[params.length - 2] == String.class && params[params.length - 1] == Integer.TYPE) {
+                final StringJoiner types = new StringJoiner(", ");
+                Arrays.stream(params).forEach(p -> types.add(p.getTypeName()));
+                assertTrue(registered.contains(m.getName() + "(" + types + ")"), "converter " + m);
+                ++count;
+            }
+        }
+        assertEquals(count, registered.size());
+    }
+
+    @Test
+    void main() throws Throwable {
+        final Path dir = Files.createTempDirectory("gnopt-reachability");
+        GnoptReachability.main("--output=" + dir, Opts.class.getName());
+        assertTrue(Files.readString(dir.resolve(GnoptReachability.FILE_NAME)).contains(Opts.class.getName()));
+    }
+
+    @Test
+    void negMainInvalidOption() {
+        assertThrows(IllegalArgumentException.class, () -> GnoptReachability.main("--outputs=x", Opts.class.getName()));
+    }
+
+    @Test
+    void negInvalidProcessor() {
+        assertThrows(GnoptCompiler.InvalidOptionProcessorException.class, () -> GnoptReachability.reflectConfig(List.of(GnoptCompilerTest.NonVoidReturn.class)));
+    }
+
+    private static Map<String, Set<String>> parse(final String json) {
+        final Map<String, Set<String>> registered = new HashMap<>();
+        final Matcher entry = ENTRY.matcher(json);
+        while (entry.find()) {
+            final Set<String> methods = new HashSet<>();
+            final Matcher method = METHOD.matcher(entry.group(3));
+            while (method.find()) {
+                methods.add(method.group(1) + "(" + method.group(2).replace("\"", "") + ")");
+            }
+            registered.put(entry.group(1), methods);
+        }
+        return registered;
+    }
+}
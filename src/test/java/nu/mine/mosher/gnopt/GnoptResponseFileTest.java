@@ -0,0 +1,106 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptResponseFileTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        int verbose;
+        String name = "";
+        final List<String> args = new ArrayList<>();
+
+        public void verbose(final Optional<String> value) {
+            ++this.verbose;
+        }
+
+        public void name(final Optional<String> value) {
+            this.name = value.orElse("");
+        }
+
+        public void __(final Optional<String> value) {
+            this.args.add(value.get());
+        }
+    }
+
+    private static final GnoptParser<Opts> PARSER = GnoptParser.of(Opts.class).withResponseFiles(true);
+
+    @Test
+    void nominal() throws Throwable {
+        final Path dir = Files.createTempDirectory("gnopt-rsp");
+        final Path rsp = write(dir.resolve("args.rsp"), "--verbose a\n  \"b c\"\t--name='x y'\n''\n");
+        final Opts opts = PARSER.parse("first", "@" + rsp, "last");
+        assertAll(
+            () -> assertEquals(1, opts.verbose),
+            () -> assertEquals("x y", opts.name),
+            () -> assertEquals(List.of("first", "a", "b c", "", "last"), opts.args)
+        );
+    }
+
+    @Test
+    void nested() throws Throwable {
+        final Path dir = Files.createTempDirectory("gnopt-rsp");
+        final Path inner = write(dir.resolve("inner.rsp"), "inner --verbose");
+        final Path outer = write(dir.resolve("outer.rsp"), "before @" + inner + " after @" + inner);
+        final Opts opts = PARSER.parse("@" + outer);
+        assertEquals(2, opts.verbose);
+        assertEquals(List.of("before", "inner", "after", "inner"), opts.args);
+    }
+
+    @Test
+    void terminatorInsideFile() throws Throwable {
+        final Path dir = Files.createTempDirectory("gnopt-rsp");
+        final Path other = write(dir.resolve("other.rsp"), "--verbose");
+        final Path rsp = write(dir.resolve("args.rsp"), "-- --verbose");
+        final Opts opts = PARSER.parse("@" + rsp, "@" + other);
+        assertEquals(0, opts.verbose);
+        assertEquals(List.of("--verbose", "@" + other), opts.args);
+    }
+
+    @Test
+    void manyArguments() throws Throwable {
+        final Path dir = Files.createTempDirectory("gnopt-rsp");
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100_000; ++i) {
+            sb.append("--verbose\n");
+        }
+        final Path rsp = write(dir.resolve("big.rsp"), sb.toString());
+        assertEquals(100_000, PARSER.parse("@" + rsp).verbose);
+    }
+
+    @Test
+    void emptyFile() throws Throwable {
+        final Path rsp = write(Files.createTempDirectory("gnopt-rsp").resolve("empty.rsp"), "");
+        assertTrue(PARSER.parse("@" + rsp).args.isEmpty());
+    }
+
+    @Test
+    void disabledByDefault() throws Throwable {
+        assertEquals(List.of("@nonesuch"), Gnopt.process(Opts.class, "@nonesuch").args);
+        assertEquals(List.of("@"), PARSER.parse("@").args);
+    }
+
+    @Test
+    void negCycle() throws Throwable {
+        final Path dir = Files.createTempDirectory("gnopt-rsp");
+        final Path a = dir.resolve("a.rsp");
+        final Path b = write(dir.resolve("b.rsp"), "@" + a);
+        write(a, "x @" + b);
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> PARSER.parse("@" + a));
+        assertTrue(e.getMessage().contains("response file includes itself"));
+    }
+
+    @Test
+    void negMissingFile() {
+        assertThrows(Gnopt.InvalidOption.class, () -> PARSER.parse("@/nonexistent/gnopt/file.rsp"));
+    }
+
+    private static Path write(final Path path, final String s) throws Exception {
+        return Files.writeString(path, s, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,143 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptRouterTest {
+    static final Set<String> initialized = Collections.synchronizedSet(new HashSet<>());
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class GitOpts {
+        boolean verbose;
+        final List<String> args = new ArrayList<>();
+
+        public void verbose() {
+            this.verbose = true;
+        }
+
+        public void __(final Optional<String> value) {
+            this.args.add(value.get());
+        }
+    }
+
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class CommitOpts {
+        static {
+            initialized.add("commit");
+        }
+
+        String message = "";
+        final List<String> files = new ArrayList<>();
+
+        public void message(final Optional<String> value) {
+            this.message = value.orElse("");
+        }
+
+        public void __(final Optional<String> value) {
+            this.files.add(value.get());
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class LogOpts {
+        static {
+            initialized.add("log");
+        }
+
+        int max;
+
+        public void max(final int max) {
+            this.max = max;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class StatusOpts {
+        static {
+            initialized.add("status");
+        }
+
+        boolean brief;
+
+        public void brief() {
+            this.brief = true;
+        }
+    }
+
+    private static GnoptRouter<GitOpts> router() {
+        GnoptRouter<GitOpts> router = GnoptRouter.of(GitOpts.class)
+            .withCommand("commit", CommitOpts.class.getName())
+            .withCommand("log", LogOpts.class.getName())
+            .withCommand("status", StatusOpts.class.getName());
+        for (int i = 0; i < 150; ++i) {
+            router = router.withCommand("cmd" + i, "no.such.Command" + i);
+        }
+        return router;
+    }
+
+    @Test
+    void nominal() throws Gnopt.InvalidOption {
+        final GnoptRouter.Route<GitOpts> route = router().route("--verbose", "commit", "--message=hi", "a.txt", "--", "--b.txt");
+        assertTrue(route.root().verbose);
+        assertEquals(List.of(), route.root().args);
+        assertEquals(Optional.of("commit"), route.command());
+        final CommitOpts commit = (CommitOpts)route.instance().orElseThrow();
+        assertEquals("hi", commit.message);
+        assertEquals(List.of("a.txt", "--b.txt"), commit.files);
+    }
+
+    @Test
+    void onlyTheRoutedCommandIsLoaded() throws Gnopt.InvalidOption {
+        final GnoptRouter<GitOpts> router = router();
+        assertFalse(initialized.contains("status"));
+        final GnoptRouter.Route<GitOpts> route = router.route("status", "--brief");
+        assertTrue(((StatusOpts)route.instance().orElseThrow()).brief);
+        assertTrue(initialized.contains("status"));
+        assertFalse(((StatusOpts)router.route("status").instance().orElseThrow()).brief);
+    }
+
+    @Test
+    void commandAfterTerminator() throws Gnopt.InvalidOption {
+        final GnoptRouter.Route<GitOpts> route = router().route("--verbose", "--", "log");
+        assertTrue(route.root().verbose);
+        assertEquals(Optional.of("log"), route.command());
+    }
+
+    @Test
+    void noCommand() throws Gnopt.InvalidOption {
+        final GnoptRouter.Route<GitOpts> route = router().route("--verbose");
+        assertTrue(route.root().verbose);
+        assertEquals(Optional.empty(), route.command());
+        assertEquals(Optional.empty(), route.instance());
+        assertEquals(Optional.empty(), router().route((String[])null).command());
+    }
+
+    @Test
+    void commandClass() throws Gnopt.InvalidOption {
+        final GnoptRouter<GitOpts> router = GnoptRouter.of(GnoptParser.of(GitOpts.class).withAbbreviations(true)).withCommand("log", LogOpts.class);
+        final GnoptRouter.Route<GitOpts> route = router.route("--verb", "log", "--ma=5");
+        assertTrue(route.root().verbose);
+        assertEquals(5, ((LogOpts)route.instance().orElseThrow()).max);
+    }
+
+    @Test
+    void negUnknownCommand() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> router().route("--verbose", "comit"));
+        assertEquals("invalid command \"comit\"", e.getMessage());
+    }
+
+    @Test
+    void negMissingCommandClass() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> router().route("cmd7"));
+        assertEquals("cannot load command class \"no.such.Command7\"", e.getMessage());
+        assertTrue(e.getCause() instanceof ClassNotFoundException);
+    }
+
+    @Test
+    void negGlobalOptionAfterCommand() {
+        assertThrows(Gnopt.InvalidOption.class, () -> router().route("log", "--verbose"));
+    }
+}
@@ -0,0 +1,226 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GnoptServerTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        String name = "world";
+        final List<String> args = new ArrayList<>();
+
+        public void name(final Optional<String> value) {
+            this.name = value.orElse("");
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failed on purpose");
+        }
+
+        public void __(final Optional<String> value) {
+            this.args.add(value.get());
+        }
+    }
+
+    private static final GnoptServer.Program PROGRAM = GnoptServer.program(GnoptParser.of(Opts.class), (opts, out, err) -> {
+        out.println("hello, " + opts.name);
+        err.println("args: " + opts.args);
+        return opts.args.size();
+    });
+
+    private static GnoptServer tcp(final GnoptServer.Program program) throws IOException {
+        return GnoptServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), program);
+    }
+
+    @Test
+    void nominal() throws IOException {
+        try (final GnoptServer server = tcp(PROGRAM)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+            assertEquals(2, GnoptClient.run(server.address(), out, err, "--name=gnopt", "a", "\u00E9"));
+            assertEquals("hello, gnopt" + System.lineSeparator(), out.toString(StandardCharsets.UTF_8));
+            assertEquals("args: [a, \u00E9]" + System.lineSeparator(), err.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void invalidOption() throws IOException {
+        try (final GnoptServer server = tcp(PROGRAM)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+            assertEquals(GnoptServer.EXIT_INVALID_OPTION, GnoptClient.run(server.address(), out, err, "--nme=x"));
+            assertEquals("", out.toString(StandardCharsets.UTF_8));
+            assertTrue(err.toString(StandardCharsets.UTF_8).startsWith("invalid option (did you mean: name?) \"nme\""));
+        }
+    }
+
+    @Test
+    void failureIsConfinedToItsSession() throws IOException {
+        try (final GnoptServer server = tcp(PROGRAM)) {
+            final ByteArrayOutputStream err = new ByteArrayOutputStream();
+            assertEquals(GnoptServer.EXIT_INVALID_OPTION, GnoptClient.run(server.address(), new ByteArrayOutputStream(), err, "--fail"));
+            assertTrue(err.toString(StandardCharsets.UTF_8).contains("failed on purpose"));
+
+            final GnoptServer.Program throwing = (args, out, e) -> {
+                throw new IOException("broken");
+            };
+            try (final GnoptServer other = tcp(throwing)) {
+                assertEquals(GnoptServer.EXIT_FAILURE, GnoptClient.run(other.address(), new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+            }
+
+            assertEquals(0, GnoptClient.run(server.address(), new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+        }
+    }
+
+    @Test
+    void concurrentSessionsAreIsolated() throws Exception {
+        final CountDownLatch all = new CountDownLatch(32);
+        final GnoptServer.Program waiting = GnoptServer.program(GnoptParser.of(Opts.class), (opts, out, err) -> {
+            all.countDown();
+            all.await(30, TimeUnit.SECONDS);
+            out.print(opts.name);
+            return Integer.parseInt(opts.name);
+        });
+        try (final GnoptServer server = tcp(waiting)) {
+            final ExecutorService clients = Executors.newFixedThreadPool(32);
+            try {
+                final List<Future<String>> results = new ArrayList<>();
+                for (int i = 0; i < 32; ++i) {
+                    final int n = i;
+                    results.add(clients.submit(() -> {
+                        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        final int status = GnoptClient.run(server.address(), out, new ByteArrayOutputStream(), "--name=" + n);
+                        return status + ":" + out.toString(StandardCharsets.UTF_8);
+                    }));
+                }
+                for (int i = 0; i < 32; ++i) {
+                    assertEquals(i + ":" + i, results.get(i).get(30, TimeUnit.SECONDS));
+                }
+            } finally {
+                clients.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void unixDomainSocket() throws IOException {
+        assumeTrue(GnoptServer.isUnixDomainSocketSupported());
+        final Path socket = Files.createTempDirectory("gnopt-server").resolve("test.sock");
+        try (final GnoptServer server = GnoptServer.start(socket, PROGRAM)) {
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(socket));
+            try (final Stream<Path> files = Files.list(socket.getParent())) {
+                assertEquals(List.of(socket), files.collect(Collectors.toList()));
+            }
+            assertEquals(GnoptServer.unixDomainSocketAddress(socket), server.address());
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(0, GnoptClient.run(GnoptServer.unixDomainSocketAddress(socket), out, new ByteArrayOutputStream()));
+            assertEquals("hello, world" + System.lineSeparator(), out.toString(StandardCharsets.UTF_8));
+            assertThrows(BindException.class, () -> GnoptServer.start(socket, PROGRAM));
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    void staleUnixDomainSocketIsReplaced() throws IOException {
+        assumeTrue(GnoptServer.isUnixDomainSocketSupported());
+        final Path socket = Files.createTempDirectory("gnopt-server").resolve("test.sock");
+        Files.createFile(socket);
+        try (final GnoptServer server = GnoptServer.start(socket, PROGRAM)) {
+            assertEquals(0, GnoptClient.run(server.address(), new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+        }
+    }
+
+    @Test
+    void launcherLoadsOnlyTheProtocol() throws Exception {
+        try (final GnoptServer server = tcp(PROGRAM)) {
+            final Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xlog:class+load=info",
+                "-cp", System.getProperty("java.class.path"),
+                GnoptClient.class.getName(),
+                "--port=" + ((InetSocketAddress)server.address()).getPort(), "--", "--name=launcher")
+                .start();
+            final List<String> lines;
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                lines = reader.lines().collect(Collectors.toList());
+            }
+            assertEquals(0, process.waitFor());
+            assertTrue(lines.contains("hello, launcher"), String.join("\n", lines));
+            final Set<String> loaded = lines.stream()
+                .filter(line -> line.contains(" nu.mine.mosher.gnopt."))
+                .map(line -> line.replaceFirst(".* (nu\\.mine\\.mosher\\.gnopt\\.\\S+) .*", "$1"))
+                .collect(Collectors.toSet());
+            assertEquals(Set.of(GnoptClient.class.getName(), GnoptProtocol.class.getName()), loaded);
+        }
+    }
+
+    @Test
+    void negTooManyArguments() throws IOException {
+        try (final GnoptServer server = tcp(PROGRAM); final Socket raw = new Socket()) {
+            raw.connect(server.address());
+            final DataOutputStream out = new DataOutputStream(raw.getOutputStream());
+            out.writeInt(GnoptProtocol.MAGIC);
+            out.writeShort(GnoptProtocol.VERSION);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            assertEquals(-1, raw.getInputStream().read());
+        }
+    }
+
+    @Test
+    void negHugeArgumentIsRejectedBeforeItsBody() throws IOException {
+        try (final GnoptServer server = tcp(PROGRAM); final Socket raw = new Socket()) {
+            raw.connect(server.address());
+            final DataOutputStream out = new DataOutputStream(raw.getOutputStream());
+            out.writeInt(GnoptProtocol.MAGIC);
+            out.writeShort(GnoptProtocol.VERSION);
+            out.writeInt(2);
+            out.writeInt(1);
+            out.writeByte('x');
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            // no body is sent, so the server can only close the connection (before the request deadline) by rejecting the length
+            final long start = System.nanoTime();
+            assertEquals(-1, raw.getInputStream().read());
+            assertTrue(System.nanoTime() - start < GnoptServer.REQUEST_TIMEOUT.toNanos() / 2);
+        }
+    }
+
+    @Test
+    void negSlowRequestIsDisconnected() throws IOException {
+        try (final GnoptServer server = tcp(PROGRAM); final Socket raw = new Socket()) {
+            server.requestTimeout = Duration.ofMillis(100);
+            raw.connect(server.address());
+            final DataOutputStream out = new DataOutputStream(raw.getOutputStream());
+            out.writeInt(GnoptProtocol.MAGIC);
+            out.writeShort(GnoptProtocol.VERSION);
+            out.writeInt(1);
+            out.writeInt(1_000);
+            out.flush();
+            final long start = System.nanoTime();
+            assertEquals(-1, raw.getInputStream().read());
+            assertTrue(System.nanoTime() - start < GnoptServer.REQUEST_TIMEOUT.toNanos());
+        }
+    }
+
+    @Test
+    void negNotARequest() throws IOException {
+        try (final GnoptServer server = tcp(PROGRAM); final Socket raw = new Socket()) {
+            raw.connect(server.address());
+            raw.getOutputStream().write("GET / HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals(-1, raw.getInputStream().read());
+        }
+    }
+}
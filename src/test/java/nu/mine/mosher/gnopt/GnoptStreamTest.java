@@ -0,0 +1,104 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptStreamTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        int verbose;
+        int count;
+        final List<String> args = new ArrayList<>();
+
+        public void verbose(final Optional<String> value) {
+            ++this.verbose;
+        }
+
+        public void __(final Optional<String> value) {
+            if (this.args.size() < 10) {
+                this.args.add(value.get());
+            }
+            ++this.count;
+        }
+    }
+
+    @Test
+    void iterator() throws Throwable {
+        final Opts opts = Gnopt.process(Opts.class, List.of("a", "--verbose", "--", "--verbose").iterator());
+        assertEquals(1, opts.verbose);
+        assertEquals(List.of("a", "--verbose"), opts.args);
+    }
+
+    @Test
+    void stream() throws Throwable {
+        final Opts opts = Gnopt.process(Opts.class, Stream.of("--verbose", "x", "--verbose"));
+        assertEquals(2, opts.verbose);
+        assertEquals(List.of("x"), opts.args);
+    }
+
+    @Test
+    void generatedMillion() throws Throwable {
+        final Opts opts = Gnopt.process(Opts.class, IntStream.range(0, 1_000_000).mapToObj(i -> "file" + i));
+        assertEquals(1_000_000, opts.count);
+    }
+
+    @Test
+    void nullElement() throws Throwable {
+        final Opts opts = Gnopt.process(Opts.class, Arrays.asList("a", null).iterator());
+        assertEquals(List.of("a", ""), opts.args);
+    }
+
+    @Test
+    void channel() throws Throwable {
+        final Opts opts = Gnopt.process(Opts.class, channel("a\0--verbose\0\0caf\u00e9\0--\0--verbose\0last"));
+        assertEquals(1, opts.verbose);
+        assertEquals(List.of("a", "", "caf\u00e9", "--verbose", "last"), opts.args);
+    }
+
+    @Test
+    void channelLongArgument() throws Throwable {
+        final String big = "x".repeat(100_000);
+        final Opts opts = Gnopt.process(Opts.class, channel(big + "\0y\0"));
+        assertEquals(List.of(big, "y"), opts.args);
+    }
+
+    @Test
+    void channelEmpty() throws Throwable {
+        assertEquals(0, Gnopt.process(Opts.class, channel("")).count);
+    }
+
+    @Test
+    void negChannelFails() {
+        final ReadableByteChannel broken = new ReadableByteChannel() {
+            @Override
+            public int read(final ByteBuffer dst) throws IOException {
+                throw new IOException("broken");
+            }
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+            @Override
+            public void close() {
+            }
+        };
+        assertThrows(IOException.class, () -> Gnopt.process(Opts.class, broken));
+    }
+
+    @Test
+    void negInvalidOption() {
+        assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, Stream.of("--nonesuch")));
+    }
+
+    private static ReadableByteChannel channel(final String s) {
+        return Channels.newChannel(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)));
+    }
+}
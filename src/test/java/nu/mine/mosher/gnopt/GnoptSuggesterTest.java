@@ -0,0 +1,106 @@
+package nu.mine.mosher.gnopt;
+
+import nu.mine.mosher.gnopt.compiler.GnoptCompiler;
+import nu.mine.mosher.gnopt.compiler.GnoptSuggester;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptSuggesterTest {
+    @SuppressWarnings({"unused", "OptionalUsedAsFieldOrParameterType"})
+    public static class Opts {
+        public void verbose() {
+        }
+
+        public void version() {
+        }
+
+        public void dry_run() {
+        }
+
+        public void __(final Optional<String> value) {
+        }
+    }
+
+    private static final GnoptSuggester UUT = GnoptSuggester.of(List.of("verbose", "version", "dry_run", "draw", "port", "sort", "__"));
+
+    @Test
+    void nominal() {
+        assertAll(
+            () -> assertEquals(List.of("verbose"), UUT.suggest("verbos")),
+            () -> assertEquals(List.of("verbose"), UUT.suggest("verbsoe")),
+            () -> assertEquals(List.of("verbose", "version"), UUT.suggest("versoe")),
+            () -> assertEquals(List.of("version"), UUT.suggest("versoin")),
+            () -> assertEquals(List.of("dry_run"), UUT.suggest("dry-rnu")),
+            () -> assertEquals(List.of("port", "sort"), UUT.suggest("port_")),
+            () -> assertEquals(List.of("port", "sort"), UUT.suggest("xort")),
+            () -> assertEquals(List.of(), UUT.suggest("x")),
+            () -> assertEquals(List.of(), UUT.suggest("_")),
+            () -> assertEquals(List.of(), UUT.suggest("")),
+            () -> assertEquals(List.of(), GnoptSuggester.of(List.of()).suggest("x"))
+        );
+    }
+
+    @Test
+    void hostileInput() {
+        assertEquals(List.of(), UUT.suggest("verbose".repeat(1_000_000)));
+    }
+
+    @Test
+    void sameAsScanningEveryName() {
+        final Random rnd = new Random(42);
+        final Set<String> names = new TreeSet<>();
+        while (names.size() < 4000) {
+            names.add(randomName(rnd));
+        }
+        names.remove(GnoptCompiler.METHOD_NAME_FOR_UNNAMED_ARGS);
+        final GnoptSuggester uut = GnoptSuggester.of(names);
+        for (int i = 0; i < 1000; ++i) {
+            final String query = randomName(rnd);
+            final int tolerance = query.length() <= 4 ? 1 : 2;
+            final List<String> expected = new ArrayList<>();
+            for (int d = 0; d <= tolerance; ++d) {
+                for (final String name : names) {
+                    if (levenshtein(query, name) == d) {
+                        expected.add(name);
+                    }
+                }
+            }
+            assertEquals(expected.subList(0, Math.min(expected.size(), GnoptSuggester.MAX_SUGGESTIONS)), uut.suggest(query), query);
+        }
+    }
+
+    @Test
+    void invalidOptionMessage() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--verison"));
+        assertEquals("invalid option (did you mean: version?) \"verison\"", e.getMessage());
+        final Gnopt.InvalidOption none = assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--xyz"));
+        assertEquals("invalid option \"xyz\"", none.getMessage());
+        assertEquals(List.of("verbose", "version"), GnoptCompiler.compile(Opts.class).suggest("verbon"));
+    }
+
+    private static String randomName(final Random rnd) {
+        final StringBuilder sb = new StringBuilder();
+        final int len = 1 + rnd.nextInt(8);
+        for (int i = 0; i < len; ++i) {
+            sb.append("abcde_xy".charAt(rnd.nextInt(8)));
+        }
+        return sb.toString();
+    }
+
+    private static int levenshtein(final String a, final String b) {
+        final int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); ++i) {
+            for (int j = 0; j <= b.length(); ++j) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                } else {
+                    d[i][j] = Math.min(d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1), Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -0,0 +1,146 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptTypedTest {
+    public enum Level { LOW, VERY_HIGH }
+
+    @SuppressWarnings("unused")
+    public static class Opts {
+        int port;
+        long size;
+        double ratio;
+        boolean verbose;
+        Path output;
+        Duration timeout;
+        Level level;
+        OptionalInt jobs;
+        OptionalLong limit = OptionalLong.of(-1L);
+        int quiet;
+        final List<Integer> args = new ArrayList<>();
+
+        public void quiet() {
+            ++this.quiet;
+        }
+
+        public void port(final int port) {
+            this.port = port;
+        }
+
+        public void size(final long size) {
+            this.size = size;
+        }
+
+        public void ratio(final double ratio) {
+            this.ratio = ratio;
+        }
+
+        public void verbose(final boolean verbose) {
+            this.verbose = verbose;
+        }
+
+        public void output(final Path output) {
+            this.output = output;
+        }
+
+        public void timeout(final Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public void level(final Level level) {
+            this.level = level;
+        }
+
+        public void jobs(final OptionalInt jobs) {
+            this.jobs = jobs;
+        }
+
+        public void limit(final OptionalLong limit) {
+            this.limit = limit;
+        }
+
+        public void __(final int arg) {
+            this.args.add(arg);
+        }
+    }
+
+    @Test
+    void nominal() throws Gnopt.InvalidOption {
+        final Opts opts = Gnopt.process(Opts.class,
+            "--port=8080", "--size=-9223372036854775808", "--ratio=2.5e-1", "--verbose",
+            "--output=out/x.txt", "--timeout=PT1M30S", "--level=very-high", "--jobs", "--limit=7", "42", "-1", "--quiet", "--quiet");
+        assertAll(
+            () -> assertEquals(8080, opts.port),
+            () -> assertEquals(Long.MIN_VALUE, opts.size),
+            () -> assertEquals(0.25d, opts.ratio),
+            () -> assertTrue(opts.verbose),
+            () -> assertEquals(Paths.get("out", "x.txt"), opts.output),
+            () -> assertEquals(Duration.ofSeconds(90L), opts.timeout),
+            () -> assertEquals(Level.VERY_HIGH, opts.level),
+            () -> assertEquals(OptionalInt.empty(), opts.jobs),
+            () -> assertEquals(OptionalLong.of(7L), opts.limit),
+            () -> assertEquals(List.of(42, -1), opts.args),
+            () -> assertEquals(2, opts.quiet)
+        );
+    }
+
+    @Test
+    void booleanValues() throws Gnopt.InvalidOption {
+        assertTrue(Gnopt.process(Opts.class, "--verbose=yes").verbose);
+        assertTrue(Gnopt.process(Opts.class, "--verbose=ON").verbose);
+        assertFalse(Gnopt.process(Opts.class, "--verbose=false").verbose);
+        assertFalse(Gnopt.process(Opts.class, "--verbose=0").verbose);
+    }
+
+    @Test
+    void enumIsCaseInsensitive() throws Gnopt.InvalidOption {
+        assertEquals(Level.LOW, Gnopt.process(Opts.class, "--level=Low").level);
+        assertEquals(Level.VERY_HIGH, Gnopt.process(Opts.class, "--level=very_high").level);
+    }
+
+    @Test
+    void negBadInt() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--port=80a"));
+        assertTrue(e.getMessage().contains("invalid value"), e.getMessage());
+        assertTrue(e.getMessage().contains("\"port\""), e.getMessage());
+    }
+
+    @Test
+    void negIntOverflow() throws Gnopt.InvalidOption {
+        assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--port=2147483648"));
+        assertEquals(Integer.MIN_VALUE, Gnopt.process(Opts.class, "--port=-2147483648").port);
+        assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--size=9223372036854775808"));
+    }
+
+    @Test
+    void negMissingValue() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--port"));
+        assertTrue(e.getMessage().contains("missing required value"), e.getMessage());
+    }
+
+    @Test
+    void negFlagWithValue() {
+        final Gnopt.InvalidOption e = assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--quiet=yes"));
+        assertTrue(e.getMessage().contains("unexpected value"), e.getMessage());
+        assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--quiet="));
+    }
+
+    @Test
+    void negBadValues() {
+        assertAll(
+            () -> assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--ratio=1.2.3")),
+            () -> assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--ratio=0x10")),
+            () -> assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--verbose=maybe")),
+            () -> assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--timeout=90")),
+            () -> assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--level=medium")),
+            () -> assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "--jobs=x")),
+            () -> assertThrows(Gnopt.InvalidOption.class, () -> Gnopt.process(Opts.class, "x"))
+        );
+    }
+}
@@ -0,0 +1,128 @@
+package nu.mine.mosher.gnopt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GnoptWatcherTest {
+    @SuppressWarnings("unused")
+    public static class Opts {
+        final Map<String, Integer> calls = new HashMap<>();
+        int port;
+        String host = "";
+
+        public void port(final int port) {
+            this.calls.merge("port", 1, Integer::sum);
+            this.port = port;
+        }
+
+        public void host(final Optional<String> host) {
+            this.calls.merge("host", 1, Integer::sum);
+            this.host = host.orElse("");
+        }
+    }
+
+    @Test
+    void initial() throws Throwable {
+        final Path file = file("--port=80 --host=example.com --port=8080");
+        try (final GnoptWatcher<Opts> uut = GnoptParser.of(Opts.class).watch(file)) {
+            final Opts opts = uut.instance();
+            assertEquals(8080, opts.port);
+            assertEquals("example.com", opts.host);
+            assertEquals(1, (int)opts.calls.get("port"));
+            assertEquals(Map.of("port", Optional.of("8080"), "host", Optional.of("example.com")), uut.snapshot());
+        }
+    }
+
+    @Test
+    void changeIsPublishedAsNewInstance() throws Throwable {
+        final Path file = file("--port=80 --host=example.com");
+        try (final GnoptWatcher<Opts> uut = GnoptParser.of(Opts.class).watch(file)) {
+            final Opts before = uut.instance();
+            Files.writeString(file, "--port=81 --host=example.com");
+            // the watcher thread might already have applied the change
+            assertTrue(Set.of("port").containsAll(uut.reload()));
+            final Opts after = uut.instance();
+            assertNotSame(before, after);
+            assertEquals(80, before.port);
+            assertEquals(1, (int)before.calls.get("port"));
+            assertEquals(81, after.port);
+            assertEquals("example.com", after.host);
+            assertEquals(1, (int)after.calls.get("port"));
+            assertEquals(1, (int)after.calls.get("host"));
+            assertEquals(Optional.of("81"), uut.snapshot().get("port"));
+
+            assertEquals(Set.of(), uut.reload());
+            assertSame(after, uut.instance());
+        }
+    }
+
+    @Test
+    void removedOptionKeepsLastValue() throws Throwable {
+        final Path file = file("--port=80 --host=example.com");
+        try (final GnoptWatcher<Opts> uut = GnoptParser.of(Opts.class).watch(file)) {
+            Files.writeString(file, "--port=81");
+            uut.reload();
+            assertEquals(81, uut.instance().port);
+            assertEquals("example.com", uut.instance().host);
+        }
+    }
+
+    @Test
+    void invalidChangeIsNotApplied() throws Throwable {
+        final Path file = file("--port=80 --host=example.com");
+        try (final GnoptWatcher<Opts> uut = GnoptParser.of(Opts.class).watch(file)) {
+            final Map<String, Optional<String>> before = uut.snapshot();
+            final Opts instance = uut.instance();
+            Files.writeString(file, "--host=changed.example.com --port=eighty");
+            assertThrows(Gnopt.InvalidOption.class, uut::reload);
+            assertSame(instance, uut.instance());
+            assertEquals("example.com", instance.host);
+            assertSame(before, uut.snapshot());
+        }
+    }
+
+    @Test
+    void watchesFile() throws Throwable {
+        final Path file = file("--port=80");
+        try (final GnoptWatcher<Opts> uut = GnoptParser.of(Opts.class).watch(file)) {
+            Files.writeString(file, "--port=90");
+            final long deadline = System.nanoTime() + 30_000_000_000L;
+            while (uut.snapshot().get("port").equals(Optional.of("80")) && System.nanoTime() < deadline) {
+                Thread.sleep(20L);
+            }
+            assertEquals(Optional.of("90"), uut.snapshot().get("port"));
+            assertEquals(90, uut.instance().port);
+        }
+    }
+
+    @Test
+    void emptyFile() throws Throwable {
+        final Path file = file("");
+        try (final GnoptWatcher<Opts> uut = GnoptParser.of(Opts.class).watch(file)) {
+            assertEquals(0, uut.instance().port);
+            assertEquals(Map.of(), uut.snapshot());
+        }
+    }
+
+    @Test
+    void negNonOption() throws IOException {
+        final Path file = file("--port=80 positional");
+        assertThrows(Gnopt.InvalidOption.class, () -> GnoptParser.of(Opts.class).watch(file));
+    }
+
+    @Test
+    void negMissingFile() throws IOException {
+        final Path dir = Files.createTempDirectory("gnopt-watcher");
+        assertThrows(NoSuchFileException.class, () -> GnoptParser.of(Opts.class).watch(dir.resolve("missing.opts")));
+    }
+
+    private static Path file(final String contents) throws IOException {
+        final Path dir = Files.createTempDirectory("gnopt-watcher");
+        return Files.writeString(dir.resolve("settings.opts"), contents);
+    }
+}
@@ -0,0 +1,122 @@
+package nu.mine.mosher.gnopt.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptionTrieTest {
+    @Test
+    void nominal() {
+        final OptionTrie<String> uut = new OptionTrie<>(Map.of("verbose", "V", "verb", "B", "dry_run", "D", "__", "A"));
+        assertAll(
+            () -> assertEquals("V", uut.get("verbose")),
+            () -> assertEquals("B", uut.get("verb")),
+            () -> assertEquals("D", uut.get("dry_run")),
+            () -> assertEquals("A", uut.get("__")),
+            () -> assertNull(uut.get("ver")),
+            () -> assertNull(uut.get("verbosex")),
+            () -> assertNull(uut.get("")),
+            () -> assertNull(uut.get("x"))
+        );
+    }
+
+    @Test
+    void folding() {
+        final OptionTrie<String> uut = new OptionTrie<>(Map.of("dry_run", "D", "a-b", "AB"));
+        assertAll(
+            () -> assertEquals("D", uut.get("dry-run")),
+            () -> assertEquals("D", uut.get("dry_run")),
+            () -> assertEquals("AB", uut.get("a_b")),
+            () -> assertEquals("AB", uut.get("a-b")),
+            () -> assertEquals("__", OptionTrie.fold("--"))
+        );
+    }
+
+    @Test
+    void region() {
+        final OptionTrie<String> uut = new OptionTrie<>(Map.of("dry_run", "D"));
+        final String arg = "--dry-run=yes";
+        assertEquals("D", uut.get(arg, 2, 9));
+        assertNull(uut.get(arg, 2, 8));
+        assertNull(uut.get(arg, 2, arg.length()));
+    }
+
+    @Test
+    void empty() {
+        final OptionTrie<String> uut = new OptionTrie<>(Map.of());
+        assertNull(uut.get("anything"));
+        assertNull(uut.get(""));
+    }
+
+    @Test
+    void laterFoldedDuplicateWins() {
+        final Map<String, String> map = new LinkedHashMap<>();
+        map.put("a_b", "first");
+        map.put("a-b", "second");
+        assertEquals("second", new OptionTrie<>(map).get("a_b"));
+    }
+
+    @Test
+    void manyRandomNames() {
+        final Random rnd = new Random(42);
+        final Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < 5000; ++i) {
+            map.put(randomName(rnd), i);
+        }
+        final OptionTrie<Integer> uut = new OptionTrie<>(map);
+        map.forEach((k, v) -> assertEquals(v, uut.get(k)));
+        for (int i = 0; i < 5000; ++i) {
+            final String name = randomName(rnd);
+            assertEquals(map.get(name), uut.get(name));
+        }
+    }
+
+    @Test
+    void complete() {
+        final OptionTrie<String> uut = new OptionTrie<>(Map.of("verbose", "V", "verb", "B", "dry_run", "D", "draw", "W"));
+        assertAll(
+            () -> assertEquals(List.of("verb"), uut.complete("verb", 0, 4)),
+            () -> assertEquals(List.of("verb", "verbose"), uut.complete("ve", 0, 2)),
+            () -> assertEquals(List.of("verbose"), uut.complete("--verbo", 2, 7)),
+            () -> assertEquals(List.of("dry_run"), uut.complete("dry-", 0, 4)),
+            () -> assertEquals(List.of("draw", "dry_run"), uut.complete("dr", 0, 2)),
+            () -> assertEquals(List.of("draw", "dry_run", "verb", "verbose"), uut.complete("", 0, 0)),
+            () -> assertEquals(List.of(), uut.complete("x", 0, 1)),
+            () -> assertEquals(List.of(), uut.complete("verbosex", 0, 8)),
+            () -> assertEquals(List.of(), new OptionTrie<String>(Map.of()).complete("", 0, 0))
+        );
+    }
+
+    @Test
+    void completeManyRandomNames() {
+        final Random rnd = new Random(42);
+        final Set<String> names = new TreeSet<>();
+        for (int i = 0; i < 2000; ++i) {
+            names.add(randomName(rnd));
+        }
+        final Map<String, String> map = new HashMap<>();
+        names.forEach(n -> map.put(n, n));
+        final OptionTrie<String> uut = new OptionTrie<>(map);
+        for (int i = 0; i < 2000; ++i) {
+            final String prefix = randomName(rnd);
+            final List<String> expected = new ArrayList<>();
+            if (names.contains(prefix)) {
+                expected.add(prefix);
+            } else {
+                names.stream().filter(n -> n.startsWith(prefix)).forEach(expected::add);
+            }
+            assertEquals(expected, uut.complete(prefix, 0, prefix.length()), prefix);
+        }
+    }
+
+    private static String randomName(final Random rnd) {
+        final StringBuilder sb = new StringBuilder();
+        final int len = 1 + rnd.nextInt(6);
+        for (int i = 0; i < len; ++i) {
+            sb.append("abc_xyz".charAt(rnd.nextInt(7)));
+        }
+        return sb.toString();
+    }
+}